@@ -20,15 +20,19 @@
 package org.edgexfoundry.controller;
 
 import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.edgexfoundry.handler.CommandHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/api/v1/device")
@@ -38,27 +42,49 @@ public class CommandController {
 	private CommandHandler command;
 	
 	@RequestMapping(value = "/{deviceId}/{cmd}", method = { RequestMethod.PUT, RequestMethod.POST, RequestMethod.GET })
-	public Callable<Map<String,String>> getCommand(@PathVariable String deviceId, @PathVariable String cmd,
-			@RequestBody(required=false) String arguments) {
-		Callable<Map<String,String>> callable = new Callable<Map<String,String>>() {
-			@Override
-			public Map<String,String> call() throws Exception {
-				return command.getResponse(deviceId, cmd, arguments);
-			}
-		};
-		return callable;
+	public DeferredResult<Map<String,String>> getCommand(@PathVariable String deviceId, @PathVariable String cmd,
+			@RequestBody(required=false) String arguments, @RequestParam(required=false) Long maxAge,
+			@RequestHeader(value="Cache-Control", required=false) String cacheControl) {
+		return defer(command.getResponse(deviceId, cmd, arguments, maxAge(maxAge, cacheControl)));
 	}
 	
 	@RequestMapping(value = "/all/{cmd}", method = { RequestMethod.PUT, RequestMethod.POST, RequestMethod.GET })
-	public Callable<Map<String,String>> getCommands(@PathVariable String cmd,
-			@RequestBody(required=false) String arguments) {
-		Callable<Map<String,String>> callable = new Callable<Map<String,String>>() {
-			@Override
-			public Map<String,String> call() throws Exception {
-				return command.getResponses(cmd, arguments);
+	public DeferredResult<Map<String,String>> getCommands(@PathVariable String cmd,
+			@RequestBody(required=false) String arguments, @RequestParam(required=false) Long maxAge,
+			@RequestHeader(value="Cache-Control", required=false) String cacheControl) {
+		return defer(command.getResponses(cmd, arguments, maxAge(maxAge, cacheControl)));
+	}
+	
+	// maxAge parameter in milliseconds, else Cache-Control max-age in seconds or no-cache, else null
+	// to use the configured policy
+	private Long maxAge(Long maxAge, String cacheControl) {
+		if (maxAge != null || cacheControl == null)
+			return maxAge;
+		for (String directive: cacheControl.split(",")) {
+			directive = directive.trim().toLowerCase();
+			if (directive.equals("no-cache"))
+				return 0L;
+			if (directive.startsWith("max-age=")) {
+				try {
+					return Long.parseLong(directive.substring(8).trim()) * 1000;
+				} catch (NumberFormatException e) {
+					return null;
+				}
 			}
-		};
-		return callable;
+		}
+		return null;
+	}
+	
+	// the servlet thread is released while the device round trip is in flight
+	private DeferredResult<Map<String,String>> defer(CompletableFuture<Map<String,String>> future) {
+		DeferredResult<Map<String,String>> result = new DeferredResult<Map<String,String>>();
+		future.whenComplete((response, cause) -> {
+			if (cause == null)
+				result.setResult(response);
+			else
+				result.setErrorResult(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+		});
+		return result;
 	}
 	
 }
@@ -19,7 +19,12 @@
  *******************************************************************************/
 package org.edgexfoundry.controller;
 
+import java.util.List;
+
+import org.edgexfoundry.data.DeviceStore;
 import org.edgexfoundry.data.ObjectStore;
+import org.edgexfoundry.data.ReadingHistory;
+import org.edgexfoundry.exception.controller.NotFoundException;
 import org.edgexfoundry.handler.FischertechHandler;
 import org.edgexfoundry.support.logging.client.EdgeXLogger;
 import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
@@ -27,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -41,6 +47,9 @@ public class ServiceController {
 	
 	@Autowired
 	FischertechHandler handler;
+	
+	@Autowired
+	DeviceStore devices;
 
 	@RequestMapping(path = "/debug/transformData/{transformData}", method = RequestMethod.GET)
 	public @ResponseBody String setTransformData(@PathVariable Boolean transformData) {
@@ -55,4 +64,20 @@ public class ServiceController {
 		handler.scan();
 		return "Running discovery";
 	}
+	
+	// last readings of a device resource kept by the service, newest first, optionally only those
+	// read between from and to (milliseconds since the epoch)
+	@RequestMapping(path = "/history/{deviceId}/{resource}", method = RequestMethod.GET)
+	public @ResponseBody List<ReadingHistory.Entry> getHistory(@PathVariable String deviceId, @PathVariable String resource,
+			@RequestParam(required = false, defaultValue = "10") int count,
+			@RequestParam(required = false) Long from, @RequestParam(required = false) Long to) {
+		if (devices.getDeviceById(deviceId) == null)
+			throw new NotFoundException("device", deviceId);
+		ReadingHistory history = objects.getHistory(deviceId, resource);
+		if (history == null)
+			throw new NotFoundException("resource", resource);
+		if (from == null && to == null)
+			return history.last(count);
+		return history.between(from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to, count);
+	}
 }
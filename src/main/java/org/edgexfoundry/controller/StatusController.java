@@ -19,22 +19,70 @@
  *******************************************************************************/
 package org.edgexfoundry.controller;
 
+import java.util.Map;
+
+import org.edgexfoundry.data.DeviceStateCache;
+import org.edgexfoundry.fischertech.FischertechDriver;
+import org.edgexfoundry.handler.CoreDataPublisher;
+import org.edgexfoundry.handler.FischertechHandler;
+import org.edgexfoundry.handler.OperationExecutor;
 import org.edgexfoundry.support.logging.client.EdgeXLogger;
 import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
-@RequestMapping("/api/v1/ping")
+@RequestMapping("/api/v1")
 public class StatusController {
 
 	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(StatusController.class);
+	
+	@Autowired
+	private FischertechDriver driver;
+	
+	@Autowired
+	private CoreDataPublisher publisher;
+	
+	@Autowired
+	private OperationExecutor executor;
+	
+	@Autowired
+	private DeviceStateCache states;
+	
+	@Autowired
+	private FischertechHandler handler;
 
-	@RequestMapping(method = RequestMethod.GET)
+	@RequestMapping(value = "/ping", method = RequestMethod.GET)
 	public @ResponseBody String ping() {
 		logger.debug("Device service pinged - yes its up!");
 		return "pong";
 	}
+	
+	@RequestMapping(value = "/status/cycle", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> cycle() {
+		return driver.getCycleStatistics();
+	}
+	
+	@RequestMapping(value = "/status/publisher", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> publisher() {
+		return publisher.getStatistics();
+	}
+	
+	@RequestMapping(value = "/status/executor", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> executor() {
+		return executor.getStatistics();
+	}
+	
+	@RequestMapping(value = "/status/devices", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> devices() {
+		return states.getStatistics();
+	}
+	
+	@RequestMapping(value = "/status/reads", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> reads() {
+		return handler.getReadStatistics();
+	}
 }
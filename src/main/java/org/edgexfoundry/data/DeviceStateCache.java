@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.data;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.handler.OperationExecutor;
+import org.edgexfoundry.support.logging.client.EdgeXLogger;
+import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+// Admin and operating state of the service's devices as last seen in metadata. Entries older than
+// the ttl are still answered while a background reload runs, callbacks drop entries right away.
+@Repository
+public class DeviceStateCache {
+
+	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(DeviceStateCache.class);
+	
+	public static class State {
+		private final AdminState adminState;
+		private final OperatingState operatingState;
+		private final long loaded;
+		
+		State(AdminState adminState, OperatingState operatingState, long loaded) {
+			this.adminState = adminState;
+			this.operatingState = operatingState;
+			this.loaded = loaded;
+		}
+		
+		// null when metadata does not know the device
+		public AdminState getAdminState() {
+			return adminState;
+		}
+		
+		public OperatingState getOperatingState() {
+			return operatingState;
+		}
+	}
+	
+	@Autowired
+	private DeviceClient deviceClient;
+	
+	@Autowired
+	private OperationExecutor executor;
+	
+	@Value("${service.name}")
+	private String serviceName;
+	
+	// time in milliseconds before an entry is reloaded from metadata
+	@Value("${service.state.ttl:30000}")
+	private long ttl;
+	
+	private final Map<String, State> states = new ConcurrentHashMap<String, State>();
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong loadFailures = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private volatile long lastLoad = 0;
+	
+	// Only an id never seen before waits for metadata, stale entries are answered as they are
+	public State get(String deviceId) {
+		State state = states.get(deviceId);
+		if (state != null) {
+			if (System.currentTimeMillis() - state.loaded < ttl) {
+				hits.incrementAndGet();
+			} else {
+				staleHits.incrementAndGet();
+				refresh();
+			}
+			return state;
+		}
+		misses.incrementAndGet();
+		synchronized (this) {
+			state = states.get(deviceId);
+			if (state == null) {
+				load();
+				state = states.get(deviceId);
+				if (state == null) {
+					// remember unknown ids too, until the next load or callback
+					state = new State(null, null, System.currentTimeMillis());
+					states.put(deviceId, state);
+				}
+			}
+		}
+		return state;
+	}
+	
+	public void put(Device device) {
+		if (device.getId() != null)
+			states.put(device.getId(), new State(device.getAdminState(), device.getOperatingState(), System.currentTimeMillis()));
+	}
+	
+	public void put(List<Device> devices) {
+		for (Device device: devices)
+			put(device);
+	}
+	
+	public void setOperatingState(String deviceId, OperatingState operatingState) {
+		State state = states.get(deviceId);
+		if (state != null && state.adminState != null)
+			states.put(deviceId, new State(state.adminState, operatingState, state.loaded));
+	}
+	
+	public void invalidate(String deviceId) {
+		if (deviceId != null && states.remove(deviceId) != null)
+			invalidations.incrementAndGet();
+	}
+	
+	private void refresh() {
+		if (!refreshing.compareAndSet(false, true))
+			return;
+		try {
+			executor.execute(() -> {
+				try {
+					synchronized (this) {
+						load();
+					}
+				} finally {
+					refreshing.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// answered stale until a later get finds room for the reload
+			refreshing.set(false);
+		}
+	}
+	
+	// called holding the monitor
+	private void load() {
+		long started = System.currentTimeMillis();
+		// entries a callback or command replaces during the request are newer than its result and stay
+		Map<String, State> seen = new HashMap<String, State>(states);
+		try {
+			List<Device> devices = deviceClient.devicesForServiceByName(serviceName);
+			for (Device device: devices) {
+				if (device.getId() == null)
+					continue;
+				State loaded = new State(device.getAdminState(), device.getOperatingState(), started);
+				State previous = seen.remove(device.getId());
+				if (previous == null)
+					states.putIfAbsent(device.getId(), loaded);
+				else
+					states.replace(device.getId(), previous, loaded);
+			}
+			// drop the negative entries and devices metadata no longer has
+			for (Map.Entry<String, State> entry: seen.entrySet())
+				states.remove(entry.getKey(), entry.getValue());
+			loads.incrementAndGet();
+			lastLoad = started;
+		} catch (Exception e) {
+			loadFailures.incrementAndGet();
+			logger.error("Could not load device states from metadata: " + e.getMessage());
+		}
+	}
+	
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		long oldest = 0;
+		long now = System.currentTimeMillis();
+		for (State state: states.values())
+			oldest = Math.max(oldest, now - state.loaded);
+		stats.put("entries", states.size());
+		stats.put("ttl", ttl);
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("staleHits", staleHits.get());
+		stats.put("oldestEntryMs", oldest);
+		stats.put("loads", loads.get());
+		stats.put("loadFailures", loadFailures.get());
+		stats.put("lastLoadMs", lastLoad == 0 ? -1 : now - lastLoad);
+		stats.put("invalidations", invalidations.get());
+		return stats;
+	}
+	
+}
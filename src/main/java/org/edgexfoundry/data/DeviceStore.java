@@ -19,9 +19,10 @@
  *******************************************************************************/
 package org.edgexfoundry.data;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.edgexfoundry.controller.AddressableClient;
@@ -63,16 +64,49 @@ public class DeviceStore {
 	@Autowired
 	private ProfileStore profiles;
 	
+	@Autowired
+	private DeviceStateCache states;
+	
 	@Value("${service.name}")
 	private String serviceName;
 	
-	// cache for devices
-	private Map<String, FischertechDevice> devices = new HashMap<String,FischertechDevice>();
+	// cache for devices by name, with indexes by id and addressable path. Writers keep the three in
+	// step under the lock, readers go straight to the maps.
+	private final Map<String, FischertechDevice> devices = new ConcurrentHashMap<String,FischertechDevice>();
+	private final Map<String, FischertechDevice> devicesById = new ConcurrentHashMap<String,FischertechDevice>();
+	private final Map<String, FischertechDevice> devicesByAddress = new ConcurrentHashMap<String,FischertechDevice>();
+	private final Map<String, Device> deviceView = Collections.unmodifiableMap(devices);
+	private final Map<String, FischertechDevice> fischertechView = Collections.unmodifiableMap(devices);
+	private final Object indexLock = new Object();
+	
+	private void index(FischertechDevice device) {
+		synchronized (indexLock) {
+			unindex(device.getName());
+			devices.put(device.getName(), device);
+			if (device.getId() != null)
+				devicesById.put(device.getId(), device);
+			if (device.getAddressable() != null && device.getAddressable().getPath() != null)
+				devicesByAddress.put(device.getAddressable().getPath(), device);
+			states.put(device);
+		}
+	}
+	
+	private FischertechDevice unindex(String deviceName) {
+		synchronized (indexLock) {
+			FischertechDevice device = devices.remove(deviceName);
+			if (device == null)
+				return null;
+			if (device.getId() != null)
+				devicesById.remove(device.getId(), device);
+			if (device.getAddressable() != null && device.getAddressable().getPath() != null)
+				devicesByAddress.remove(device.getAddressable().getPath(), device);
+			return device;
+		}
+	}
 	
 	public boolean remove(Device device) {
 		logger.debug("Removing managed device:  " + device.getName());
-		if (devices.containsKey(device.getName())) {
-			devices.remove(device.getName());			
+		if (unindex(device.getName()) != null) {
 			Fischertech.disconnectDevice(device);
 			deviceClient.updateOpState(device.getId(), OperatingState.DISABLED.name());
 			profiles.removeDevice(device);
@@ -81,7 +115,7 @@ public class DeviceStore {
 	}
 
 	public boolean remove(String deviceId) {
-		FischertechDevice d = devices.values().stream().filter(device -> device.getId().equals(deviceId)).findAny().orElse(null);
+		FischertechDevice d = devicesById.get(deviceId);
 		if (d != null) {
 			remove(d);
 		}
@@ -94,13 +128,12 @@ public class DeviceStore {
 	}
 	
 	public boolean add(Device device) {
-		if (devices.containsKey(device.getName())) {
-			devices.remove(device.getName());
-			profiles.removeDevice(device);
-		}
+		// profile caches of a re-added device are replaced in place, so lookups never see them missing
+		unindex(device.getName());
 		logger.info("Adding managed device:  " + device.getName());
 		Device metaDevice = addDeviceToMetaData(device);
 		if (metaDevice == null) {
+			profiles.removeDevice(device);
 			remove(device);
 			return false;
 		}
@@ -143,7 +176,7 @@ public class DeviceStore {
 		
 		profiles.addDevice(device);
 		FischertechDevice FischertechDevice = new FischertechDevice(device);
-		devices.put(device.getName(), FischertechDevice);
+		index(FischertechDevice);
 		return device;
 	}
 
@@ -171,19 +204,20 @@ public class DeviceStore {
 	}
 
 	public Map<String, Device> getDevices() {
-		Map<String, Device> d = devices.entrySet().stream().collect(Collectors.toMap(
-				e -> e.getKey(),
-				e -> e.getValue().getDevice()));
-		return d;
+		return deviceView;
 	}
 	
 	public Map<String, FischertechDevice> getFischertechDevices() {
-		return devices;
+		return fischertechView;
 	}
 	
 	public Map<String, Device> initialize(String id) {
 		List<Device> metaDevices = deviceClient.devicesForService(id);
-		devices = new HashMap<>();
+		synchronized (indexLock) {
+			devices.clear();
+			devicesById.clear();
+			devicesByAddress.clear();
+		}
 		watchers.initialize(id);
 		Fischertech.initialize();
 		for (Device device : metaDevices) {
@@ -197,6 +231,7 @@ public class DeviceStore {
 	public List<Device> getMetaDevices() {
 		List<Device> metaDevices;
 		metaDevices = deviceClient.devicesForServiceByName(serviceName);
+		states.put(metaDevices);
 		for (Device metaDevice: metaDevices) {
 			Device device = devices.get(metaDevice.getName());
 			if (device != null)
@@ -218,44 +253,44 @@ public class DeviceStore {
 	}
 	
 	public Device getDevice(String deviceName) {
-		if (devices != null)
-			return devices.get(deviceName);
-		else
-			return null;
+		return devices.get(deviceName);
 	}
 	
 	public Device getDeviceById(String deviceId) {
-		if (devices != null) {
-			return devices.values().stream().filter(device -> device.getId().equals(deviceId)).findAny().orElse(null);
-		}
-		return null;
+		return devicesById.get(deviceId);
 	}
 	
 	public FischertechDevice getFischertechDeviceById(String deviceId) {
-		if (devices != null) {
-			return devices.values().stream().filter(device -> device.getId().equals(deviceId)).findAny().orElse(null);
-		}
-		return null;
+		return devicesById.get(deviceId);
+	}
+	
+	// device whose addressable path is the given address
+	public FischertechDevice getFischertechDeviceByAddress(String address) {
+		return devicesByAddress.get(address);
 	}
 
 	public boolean isDeviceLocked(String deviceId){
 		Device device = getDeviceById(deviceId);
-		if (device == null) {
-			device = getMetaDeviceById(deviceId);
-			if (device == null) { 
-				logger.error("Device not present with id " + deviceId);
-				throw new NotFoundException("device", deviceId);
-			}
+		if (device != null)
+			return device.getAdminState().equals(AdminState.LOCKED);
+		AdminState adminState = states.get(deviceId).getAdminState();
+		if (adminState == null) { 
+			logger.error("Device not present with id " + deviceId);
+			throw new NotFoundException("device", deviceId);
 		}
-		return device.getAdminState().equals(AdminState.LOCKED);
+		return adminState.equals(AdminState.LOCKED);
 	}
 
 	public void setDeviceOpState(String deviceName, OperatingState state){
 		deviceClient.updateOpStateByName(deviceName, state.name());
+		Device device = getDevice(deviceName);
+		if (device != null)
+			states.setOperatingState(device.getId(), state);
 	}
 
 	public void setDeviceByIdOpState(String deviceId, OperatingState state){
 		deviceClient.updateOpState(deviceId, state.name());
+		states.setOperatingState(deviceId, state);
 	}
 
 	public boolean updateProfile(String profileId) {
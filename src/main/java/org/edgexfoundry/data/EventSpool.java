@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.domain.core.Event;
+import org.edgexfoundry.domain.core.Reading;
+import org.edgexfoundry.support.logging.client.EdgeXLogger;
+import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+// Append-only on-disk spool of events that could not be delivered to core data. Records are
+// [length][crc32][device, spool time, readings] in numbered segment files, the replay position
+// is checkpointed next to them. Delivery is at least once, a crash may replay the last event.
+@Repository
+public class EventSpool {
+	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(EventSpool.class);
+	
+	private static final String SEGMENT_SUFFIX = ".spool";
+	private static final String CHECKPOINT = "spool.offset";
+	private static final int HEADER_SIZE = 8;
+	private static final int MAX_RECORD_SIZE = 1 << 20;
+	
+	@Value("${coredata.spool.enabled:true}")
+	private boolean enabled;
+	@Value("${coredata.spool.dir:spool}")
+	private String directory;
+	@Value("${coredata.spool.segment:4194304}")
+	private long segmentSize;
+	@Value("${coredata.spool.max:67108864}")
+	private long maxBytes;
+	@Value("${coredata.spool.age:86400000}")
+	private long maxAge;
+	
+	private Path dir;
+	
+	// segment number to file size, oldest first
+	private final TreeMap<Long, Long> segments = new TreeMap<Long, Long>();
+	private long totalBytes = 0;
+	
+	private long writeSeq;
+	private FileChannel writeChannel;
+	
+	private long readSeq;
+	private long readOffset;
+	private long nextOffset = -1;
+	private FileChannel readChannel;
+	private FileChannel checkpoint;
+	
+	private long spooled = 0;
+	private long replayed = 0;
+	private long expired = 0;
+	private long corrupt = 0;
+	private long droppedBytes = 0;
+	
+	public boolean isEnabled() {
+		return enabled && writeChannel != null;
+	}
+	
+	// Open the spool, dropping any torn record at the end of the last segment
+	@PostConstruct
+	public synchronized void recover() {
+		if (!enabled)
+			return;
+		try {
+			dir = Paths.get(directory);
+			Files.createDirectories(dir);
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+				for (Path file: files) {
+					String name = file.getFileName().toString();
+					try {
+						segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), Files.size(file));
+					} catch (NumberFormatException e) {
+						logger.debug("Ignoring unexpected spool file " + name);
+					}
+				}
+			}
+			
+			checkpoint = FileChannel.open(dir.resolve(CHECKPOINT), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			ByteBuffer position = ByteBuffer.allocate(16);
+			if (checkpoint.read(position, 0) == 16) {
+				readSeq = position.getLong(0);
+				readOffset = position.getLong(8);
+			}
+			
+			if (segments.isEmpty()) {
+				writeSeq = readSeq + 1;
+				openWriteSegment(writeSeq);
+			} else {
+				writeSeq = segments.lastKey();
+				writeChannel = FileChannel.open(segmentPath(writeSeq), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				long valid = scan(writeChannel);
+				if (valid < writeChannel.size()) {
+					logger.info("Truncating torn spool record in segment " + writeSeq + " at " + valid);
+					writeChannel.truncate(valid);
+					writeChannel.force(true);
+				}
+				segments.put(writeSeq, valid);
+			}
+			
+			if (!segments.containsKey(readSeq)) {
+				readSeq = segments.firstKey();
+				readOffset = 0;
+			}
+			readOffset = Math.min(readOffset, segments.get(readSeq));
+			for (long size: segments.values())
+				totalBytes += size;
+			saveCheckpoint();
+			logger.info("Event spool has " + segments.size() + " segments, " + totalBytes + " bytes in " + dir.toAbsolutePath());
+		} catch (IOException e) {
+			logger.error("Could not open event spool in " + directory + ": " + e.getMessage());
+			close();
+		}
+	}
+	
+	@PreDestroy
+	public synchronized void close() {
+		closeQuietly(writeChannel);
+		closeQuietly(readChannel);
+		closeQuietly(checkpoint);
+		writeChannel = null;
+		readChannel = null;
+		checkpoint = null;
+	}
+	
+	public synchronized boolean append(String deviceName, List<Reading> readings) {
+		if (!isEnabled())
+			return false;
+		try {
+			byte[] payload = encode(deviceName, readings);
+			ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+			record.putInt(payload.length);
+			record.putInt(checksum(payload));
+			record.put(payload);
+			record.flip();
+			
+			long size = segments.get(writeSeq);
+			if (size > 0 && size + record.remaining() > segmentSize) {
+				rotate();
+				size = 0;
+			}
+			// make room by dropping the oldest segments, never the one being written
+			while (totalBytes + record.remaining() > maxBytes && segments.firstKey() != writeSeq)
+				dropOldestSegment();
+				
+			while (record.hasRemaining())
+				size += writeChannel.write(record, size);
+			writeChannel.force(false);
+			totalBytes += size - segments.get(writeSeq);
+			segments.put(writeSeq, size);
+			spooled++;
+			return true;
+		} catch (IOException e) {
+			logger.error("Could not spool event for " + deviceName + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	// Oldest undelivered event, or null if the spool is empty. The same event is returned until commit()
+	public synchronized Event peek() {
+		if (!isEnabled())
+			return null;
+		try {
+			while (true) {
+				long size = segments.get(readSeq);
+				if (readOffset + HEADER_SIZE > size) {
+					if (readSeq == writeSeq)
+						return null;
+					nextSegment();
+					continue;
+				}
+				FileChannel channel = readChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				read(channel, header, readOffset);
+				int length = header.getInt(0);
+				if (length < 0 || length > MAX_RECORD_SIZE || readOffset + HEADER_SIZE + length > size) {
+					skipCorrupt();
+					continue;
+				}
+				ByteBuffer payload = ByteBuffer.allocate(length);
+				read(channel, payload, readOffset + HEADER_SIZE);
+				if (checksum(payload.array()) != header.getInt(4)) {
+					skipCorrupt();
+					continue;
+				}
+				long next = readOffset + HEADER_SIZE + length;
+				Event event = decode(payload.array());
+				if (maxAge > 0 && event.getOrigin() < System.currentTimeMillis() - maxAge) {
+					expired++;
+					readOffset = next;
+					saveCheckpoint();
+					continue;
+				}
+				nextOffset = next;
+				return event;
+			}
+		} catch (IOException e) {
+			logger.error("Could not read event spool: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	// Mark the event returned by peek() as delivered
+	public synchronized void commit() {
+		if (nextOffset < 0)
+			return;
+		readOffset = nextOffset;
+		nextOffset = -1;
+		replayed++;
+		try {
+			if (readSeq == writeSeq && readOffset == segments.get(writeSeq) && readOffset >= segmentSize)
+				rotate();
+			saveCheckpoint();
+		} catch (IOException e) {
+			logger.error("Could not update event spool checkpoint: " + e.getMessage());
+		}
+	}
+	
+	public synchronized boolean isEmpty() {
+		return !isEnabled() || (readSeq == writeSeq && readOffset >= segments.get(writeSeq));
+	}
+	
+	public synchronized Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("enabled", isEnabled());
+		stats.put("segments", segments.size());
+		stats.put("bytes", totalBytes);
+		stats.put("spooled", spooled);
+		stats.put("replayed", replayed);
+		stats.put("expired", expired);
+		stats.put("corrupt", corrupt);
+		stats.put("droppedBytes", droppedBytes);
+		return stats;
+	}
+	
+	private byte[] encode(String deviceName, List<Reading> readings) throws IOException {
+		long now = System.currentTimeMillis();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + readings.size() * 32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(deviceName);
+		out.writeLong(now);
+		out.writeShort(readings.size());
+		for (Reading reading: readings) {
+			out.writeUTF(reading.getName());
+			out.writeUTF(reading.getValue() == null ? "" : reading.getValue());
+			out.writeLong(reading.getOrigin() != 0 ? reading.getOrigin() : now);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	private Event decode(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		String deviceName = in.readUTF();
+		long origin = in.readLong();
+		int count = in.readShort() & 0xFFFF;
+		List<Reading> readings = new ArrayList<Reading>(count);
+		for (int i = 0; i < count; i++) {
+			Reading reading = new Reading();
+			reading.setName(in.readUTF());
+			reading.setValue(in.readUTF());
+			reading.setOrigin(in.readLong());
+			reading.setDevice(deviceName);
+			readings.add(reading);
+		}
+		Event event = new Event(deviceName);
+		event.setReadings(readings);
+		event.setOrigin(origin);
+		return event;
+	}
+	
+	private static int checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+	
+	// Length of the valid record prefix of a segment
+	private long scan(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long offset = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (offset + HEADER_SIZE <= size) {
+			header.clear();
+			read(channel, header, offset);
+			int length = header.getInt(0);
+			if (length < 0 || length > MAX_RECORD_SIZE || offset + HEADER_SIZE + length > size)
+				break;
+			ByteBuffer payload = ByteBuffer.allocate(length);
+			read(channel, payload, offset + HEADER_SIZE);
+			if (checksum(payload.array()) != header.getInt(4))
+				break;
+			offset += HEADER_SIZE + length;
+		}
+		return offset;
+	}
+	
+	private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position + buffer.position());
+			if (count < 0)
+				throw new IOException("Unexpected end of spool segment");
+		}
+	}
+	
+	private Path segmentPath(long seq) {
+		return dir.resolve(String.format("%020d", seq) + SEGMENT_SUFFIX);
+	}
+	
+	private void openWriteSegment(long seq) throws IOException {
+		writeChannel = FileChannel.open(segmentPath(seq), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments.put(seq, 0L);
+	}
+	
+	private void rotate() throws IOException {
+		writeChannel.close();
+		writeSeq++;
+		openWriteSegment(writeSeq);
+	}
+	
+	private FileChannel readChannel() throws IOException {
+		if (readSeq == writeSeq)
+			return writeChannel;
+		if (readChannel == null)
+			readChannel = FileChannel.open(segmentPath(readSeq), StandardOpenOption.READ);
+		return readChannel;
+	}
+	
+	// A damaged record loses the rest of its segment, later segments are still replayed
+	private void skipCorrupt() throws IOException {
+		corrupt++;
+		logger.error("Skipping damaged event spool segment " + readSeq + " at " + readOffset);
+		if (readSeq == writeSeq) {
+			readOffset = segments.get(writeSeq);
+			saveCheckpoint();
+		} else {
+			nextSegment();
+		}
+	}
+	
+	// Delete the fully read segment and continue with the next one
+	private void nextSegment() throws IOException {
+		closeQuietly(readChannel);
+		readChannel = null;
+		long seq = readSeq;
+		readSeq = segments.higherKey(seq);
+		readOffset = 0;
+		nextOffset = -1;
+		saveCheckpoint();
+		deleteSegment(seq);
+	}
+	
+	private void dropOldestSegment() throws IOException {
+		long seq = segments.firstKey();
+		long size = segments.get(seq);
+		if (seq == readSeq) {
+			droppedBytes += size - readOffset;
+			nextSegment();
+		} else {
+			droppedBytes += size;
+			deleteSegment(seq);
+		}
+		logger.error("Event spool full, dropped segment " + seq);
+	}
+	
+	private void deleteSegment(long seq) throws IOException {
+		Long size = segments.remove(seq);
+		if (size != null)
+			totalBytes -= size;
+		Files.deleteIfExists(segmentPath(seq));
+	}
+	
+	private void saveCheckpoint() throws IOException {
+		ByteBuffer position = ByteBuffer.allocate(16);
+		position.putLong(readSeq);
+		position.putLong(readOffset);
+		position.flip();
+		while (position.hasRemaining())
+			checkpoint.write(position, position.position());
+		checkpoint.force(false);
+	}
+	
+	private static void closeQuietly(FileChannel channel) {
+		try {
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			logger.debug("Error closing spool file: " + e.getMessage());
+		}
+	}
+	
+}
@@ -20,19 +20,18 @@
 package org.edgexfoundry.data;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.edgexfoundry.domain.FischertechDevice;
 import org.edgexfoundry.domain.FischertechObject;
+import org.edgexfoundry.domain.OperationPlan;
 import org.edgexfoundry.domain.core.Reading;
-import org.edgexfoundry.domain.meta.Device;
 import org.edgexfoundry.domain.meta.OperatingState;
 import org.edgexfoundry.domain.meta.PropertyValue;
 import org.edgexfoundry.domain.meta.ResourceOperation;
-import org.edgexfoundry.exception.controller.NotFoundException;
 import org.edgexfoundry.fischertech.ObjectTransform;
 import org.edgexfoundry.handler.CoreDataMessageHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,6 +42,13 @@ import com.google.gson.JsonObject;
 
 @Repository
 public class ObjectStore {
+	
+	// Cached values of one device. Each resource history has its own lock and response lists are
+	// published unmodifiable, so devices and resources never wait on each other.
+	private static class Partition {
+		final Map<String,ReadingHistory> histories = new ConcurrentHashMap<String,ReadingHistory>();
+		final Map<String,List<Reading>> responses = new ConcurrentHashMap<String,List<Reading>>();
+	}
 
 	@Value("${data.transform:true}")
 	private Boolean transformData;
@@ -56,12 +62,12 @@ public class ObjectStore {
 	@Autowired
 	private CoreDataMessageHandler processor;
 	
+	// values kept per device resource
 	@Value("${data.cache.size:1}")
 	private int CACHE_SIZE;
 	
-	private Map<String,Map<String,List<String>>> objectCache = new HashMap<>();
-	
-	private Map<String,Map<String,List<Reading>>> responseCache = new HashMap<>();
+	// partitions keyed by device id
+	private final Map<String,Partition> partitions = new ConcurrentHashMap<>();
 	
 	public Boolean getTransformData() {
 		return transformData;
@@ -75,63 +81,45 @@ public class ObjectStore {
 		if (value == null || value.equals("") || value.equals("{}"))
 			return;
 		
-		List<FischertechObject> objectsList = createObjectsList(operation, device);
+		OperationPlan plan = profiles.getOperationPlan(device.getName(), operation);
+		List<Reading> readings = build(device, operation, plan, value);
 		
-		String deviceId = device.getId();
-		List<Reading> readings = new ArrayList<>();
+		Partition partition = partitions.computeIfAbsent(device.getId(), id -> new Partition());
+		long now = System.currentTimeMillis();
 		
-		for (FischertechObject obj: objectsList) {
-			String objectName = obj.getName();
-			String result = transformResult(value, obj, device, operation);
-
-			Reading reading = processor.buildReading(objectName, result, device.getName());
-			readings.add(reading);
-			
-			synchronized(objectCache) {
-				if (objectCache.get(deviceId) == null)
-					objectCache.put(deviceId, new HashMap<String,List<String>>());
-				if (objectCache.get(deviceId).get(objectName) == null)
-					objectCache.get(deviceId).put(objectName, new ArrayList<String>());
-				objectCache.get(deviceId).get(objectName).add(0, result);
-				if (objectCache.get(deviceId).get(objectName).size() == CACHE_SIZE)
-					objectCache.get(deviceId).get(objectName).remove(CACHE_SIZE-1);
-			}
+		for (Reading reading: readings) {
+			String objectName = reading.getName();
+			ReadingHistory history = partition.histories.get(objectName);
+			if (history == null)
+				history = partition.histories.computeIfAbsent(objectName, name -> new ReadingHistory(CACHE_SIZE));
+			history.add(reading.getValue(), now);
 		}
 		
-		String operationId = objectsList.stream().map(o -> o.getName()).collect(Collectors.toList()).toString();
-		
-		synchronized(responseCache) {
-			if (responseCache.get(deviceId) == null)
-				responseCache.put(deviceId, new HashMap<String,List<Reading>>());
-			responseCache.get(deviceId).put(operationId,readings);
-		}
+		partition.responses.put(plan.getKey(), Collections.unmodifiableList(readings));
 	}
 	
-	private List<FischertechObject> createObjectsList(ResourceOperation operation, Device device) {
-		Map<String, FischertechObject> objects = profiles.getObjects().get(device.getName());
-		List<FischertechObject> objectsList = new ArrayList<FischertechObject>();
-		if (operation != null && objects != null) {
-			FischertechObject object = objects.get(operation.getObject());
-			if (!profiles.getValueDescriptors().stream().filter(
-					desc -> desc.getName().equals(operation.getParameter()))
-					.collect(Collectors.toList()).isEmpty())
-				object.setName(operation.getParameter());
-			objectsList.add(object);
-			
-			if(operation.getSecondary() != null){
-				for (String secondary: operation.getSecondary())
-					objectsList.add(objects.get(secondary));
-			}
+	// Readings of the operation for a value without caching them
+	public List<Reading> build(FischertechDevice device, ResourceOperation operation, String value) {
+		if (value == null || value.equals("") || value.equals("{}"))
+			return Collections.emptyList();
+		return build(device, operation, profiles.getOperationPlan(device.getName(), operation), value);
+	}
+	
+	private List<Reading> build(FischertechDevice device, ResourceOperation operation, OperationPlan plan, String value) {
+		List<FischertechObject> objectsList = plan.getObjects();
+		List<Reading> readings = new ArrayList<>(objectsList.size());
+		for (int i = 0; i < objectsList.size(); i++) {
+			String result = transformResult(value, objectsList.get(i), device, operation);
+			readings.add(processor.buildReading(plan.getNames().get(i), result, device.getName()));
 		}
-		
-		return objectsList;
+		return readings;
 	}
-
+	
 	private String transformResult(String result, FischertechObject object, FischertechDevice device, ResourceOperation operation) {
 		
 		PropertyValue propValue = object.getProperties().getValue();
 		
-		String transformResult = transform.transform(propValue, result);
+		String transformResult = transform.transform(object.getTransformPlan(), result);
 		
 		// if there is an assertion set for the object on a get command, test it
 		// if it fails the assertion, pass error to core services (disable device?)
@@ -149,34 +137,42 @@ public class ObjectStore {
 	}
 
 	public String get(String deviceId, String object) {
-		return get(deviceId, object, 1).get(0);
+		ReadingHistory history = getHistory(deviceId, object);
+		if (history == null)
+			return null;
+		return history.latest();
 	}
 
-	private List<String> get(String deviceId, String object, int i) {
-		if (objectCache.get(deviceId) == null 
-				|| objectCache.get(deviceId).get(object) == null 
-				|| objectCache.get(deviceId).get(object).size() < i)
+	// last value if it is at most maxAge milliseconds old, otherwise null
+	public String get(String deviceId, String object, long maxAge) {
+		ReadingHistory history = getHistory(deviceId, object);
+		if (history == null)
 			return null;
-		return objectCache.get(deviceId).get(object).subList(0, i);
+		return history.latestSince(System.currentTimeMillis() - maxAge);
+	}
+
+	public ReadingHistory getHistory(String deviceId, String object) {
+		Partition partition = partitions.get(deviceId);
+		if (partition == null)
+			return null;
+		return partition.histories.get(object);
 	}
 
 	public JsonObject get(FischertechDevice device, ResourceOperation operation) {
 		JsonObject jsonObject = new JsonObject();
-		List<FischertechObject> objectsList = createObjectsList(operation, device);
-		for (FischertechObject obj: objectsList) {
-			String objectName = obj.getName();
+		for (String objectName: profiles.getOperationPlan(device.getName(), operation).getNames())
 			jsonObject.addProperty(objectName, get(device.getId(),objectName));
-		}
 		return jsonObject;
 	}
 	
 	public List<Reading> getResponses(FischertechDevice device, ResourceOperation operation) {
-		String deviceId = device.getId();
-		List<FischertechObject> objectsList = createObjectsList(operation, device);
-		if (objectsList == null)
-			throw new NotFoundException("device", deviceId);
-		String operationId = objectsList.stream().map(o -> o.getName()).collect(Collectors.toList()).toString();
-		return responseCache.get(deviceId).get(operationId);
+		Partition partition = partitions.get(device.getId());
+		if (partition == null)
+			return Collections.emptyList();
+		List<Reading> readings = partition.responses.get(profiles.getOperationPlan(device.getName(), operation).getKey());
+		if (readings == null)
+			return Collections.emptyList();
+		return readings;
 	}
 	
 }
@@ -20,13 +20,19 @@
 package org.edgexfoundry.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.edgexfoundry.controller.DeviceProfileClient;
 import org.edgexfoundry.controller.ValueDescriptorClient;
 import org.edgexfoundry.domain.FischertechObject;
+import org.edgexfoundry.domain.InterfaceBinding;
+import org.edgexfoundry.domain.OperationPlan;
 import org.edgexfoundry.domain.common.IoTType;
 import org.edgexfoundry.domain.common.ValueDescriptor;
 import org.edgexfoundry.domain.meta.Command;
@@ -52,11 +58,12 @@ public class ProfileStore {
 	@Autowired
 	private DeviceProfileClient deviceProfileClient;
 	
-	private List<ValueDescriptor> valueDescriptors = new ArrayList<ValueDescriptor>();
+	// value descriptors of the loaded devices keyed by name, a device update replaces its entries
+	private Map<String, ValueDescriptor> valueDescriptors = new ConcurrentHashMap<>();
 
 	// map (key of device name) to cache of each devices resources keyed by resource name
 	// mapped to resource operations arrays keyed by get or put operation
-	private Map<String, Map<String, Map<String, List<ResourceOperation>>>> commands = new HashMap<>();
+	private Map<String, Map<String, Map<String, List<ResourceOperation>>>> commands = new ConcurrentHashMap<>();
 
 	public Map<String, Map<String, Map<String, List<ResourceOperation>>>> getCommands() {
 		return commands;
@@ -65,20 +72,45 @@ public class ProfileStore {
 	// map (key of device name) to cache each devices profile objects by
 	// profile
 	// object key
-	private Map<String, Map<String, FischertechObject>> objects = new HashMap<>();
+	private Map<String, Map<String, FischertechObject>> objects = new ConcurrentHashMap<>();
 	
 	public Map<String, Map<String, FischertechObject>> getObjects() {
 		return objects;
 	}
 	
+	// map (key of device name) to an immutable index of interface name to bound object,
+	// replaced as a whole whenever the device's profile is loaded
+	private Map<String, Map<String, InterfaceBinding>> interfaces = new ConcurrentHashMap<>();
+	
+	public InterfaceBinding getInterface(String deviceName, String interfaceName) {
+		Map<String, InterfaceBinding> deviceInterfaces = interfaces.get(deviceName);
+		if (deviceInterfaces == null)
+			return null;
+		return deviceInterfaces.get(interfaceName);
+	}
+	
+	// map (key of device name) to the plan of each of the device's resource operations, keyed by
+	// the operation instance held in the commands map
+	private Map<String, Map<ResourceOperation, OperationPlan>> plans = new ConcurrentHashMap<>();
+	
+	public OperationPlan getOperationPlan(String deviceName, ResourceOperation operation) {
+		Map<ResourceOperation, OperationPlan> devicePlans = plans.get(deviceName);
+		OperationPlan plan = (devicePlans == null) ? null : devicePlans.get(operation);
+		if (plan != null)
+			return plan;
+		// operations that did not come from the profile are planned on each call
+		return planOperation(objects.get(deviceName), operation, valueDescriptors.keySet());
+	}
+	
 	public void updateDevice(Device device) {
-		removeDevice(device);
 		addDevice(device);
 	}
 	
 	public void removeDevice(Device device) {
 		objects.remove(device.getName());
 		commands.remove(device.getName());
+		interfaces.remove(device.getName());
+		plans.remove(device.getName());
 	}
 	
 	public void addDevice(Device device) {
@@ -156,6 +188,7 @@ public class ProfileStore {
 
 		objects.put(device.getName(), deviceObjects);
 		commands.put(device.getName(), deviceOperations);
+		interfaces.put(device.getName(), indexInterfaces(deviceObjects, deviceOperations));
 		
 		// Create a value descriptor for each parameter using its underlying object
 		for (ResourceOperation op: ops) {
@@ -169,9 +202,52 @@ public class ProfileStore {
 				descriptor = createDescriptor(op.getParameter(), object, device);
 			}
 			
-			valueDescriptors.add(descriptor);
+			valueDescriptors.put(descriptor.getName(), descriptor);
 			descriptors.add(descriptor);
 		}
+		
+		// resolved after the descriptors, a parameter naming one reports readings under its name
+		Map<ResourceOperation, OperationPlan> devicePlans = new IdentityHashMap<>();
+		for (ResourceOperation op: ops)
+			devicePlans.put(op, planOperation(deviceObjects, op, valueDescriptors.keySet()));
+		plans.put(device.getName(), Collections.unmodifiableMap(devicePlans));
+	}
+	
+	private OperationPlan planOperation(Map<String, FischertechObject> deviceObjects, ResourceOperation operation, Set<String> descriptorNames) {
+		List<FischertechObject> planObjects = new ArrayList<FischertechObject>();
+		List<String> planNames = new ArrayList<String>();
+		if (operation != null && deviceObjects != null) {
+			FischertechObject object = deviceObjects.get(operation.getObject());
+			if (object != null) {
+				planObjects.add(object);
+				planNames.add(descriptorNames.contains(operation.getParameter()) ? operation.getParameter() : object.getName());
+			}
+			if (operation.getSecondary() != null) {
+				for (String secondary: operation.getSecondary()) {
+					FischertechObject secondaryObject = deviceObjects.get(secondary);
+					if (secondaryObject != null) {
+						planObjects.add(secondaryObject);
+						planNames.add(secondaryObject.getName());
+					}
+				}
+			}
+		}
+		return new OperationPlan(planObjects, planNames);
+	}
+
+	private Map<String, InterfaceBinding> indexInterfaces(Map<String, FischertechObject> deviceObjects, Map<String, Map<String, List<ResourceOperation>>> deviceOperations) {
+		Map<String, InterfaceBinding> index = new HashMap<>();
+		for (FischertechObject object: deviceObjects.values()) {
+			String interfaceName = object.getAttributes().getInterfaceName();
+			if (interfaceName == null)
+				continue;
+			ResourceOperation get = null;
+			Map<String, List<ResourceOperation>> operations = deviceOperations.get(object.getName().toLowerCase());
+			if (operations != null && operations.get("get") != null && !operations.get("get").isEmpty())
+				get = operations.get("get").get(0);
+			index.put(interfaceName, new InterfaceBinding(object, get));
+		}
+		return Collections.unmodifiableMap(index);
 	}
 
 	private ValueDescriptor createDescriptor(String name, DeviceObject object, Device device) {
@@ -189,6 +265,6 @@ public class ProfileStore {
 	}
 
 	public List<ValueDescriptor> getValueDescriptors() {
-		return valueDescriptors;
+		return new ArrayList<ValueDescriptor>(valueDescriptors.values());
 	}
 }
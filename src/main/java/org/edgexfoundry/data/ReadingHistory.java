@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Last values of one device resource with the time they were read, kept in a fixed ring.
+// Queries return the newest value first.
+public class ReadingHistory {
+
+	private final String[] values;
+	private final long[] times;
+	// next slot to write and number of values held
+	private int head = 0;
+	private int size = 0;
+	
+	public ReadingHistory(int capacity) {
+		values = new String[Math.max(1, capacity)];
+		times = new long[values.length];
+	}
+	
+	public synchronized void add(String value, long time) {
+		values[head] = value;
+		times[head] = time;
+		head = (head + 1) % values.length;
+		if (size < values.length)
+			size++;
+	}
+	
+	public synchronized String latest() {
+		return size == 0 ? null : values[index(0)];
+	}
+	
+	// newest value if it was read at or after time, otherwise null
+	public synchronized String latestSince(long time) {
+		if (size == 0 || times[index(0)] < time)
+			return null;
+		return values[index(0)];
+	}
+	
+	public synchronized int size() {
+		return size;
+	}
+	
+	// up to count values, newest first
+	public synchronized List<Entry> last(int count) {
+		int n = Math.min(Math.max(count, 0), size);
+		List<Entry> entries = new ArrayList<Entry>(n);
+		for (int i = 0; i < n; i++) {
+			int slot = index(i);
+			entries.add(new Entry(values[slot], times[slot]));
+		}
+		return entries;
+	}
+	
+	// up to count values read between from and to milliseconds inclusive, newest first
+	public synchronized List<Entry> between(long from, long to, int count) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < size && entries.size() < count; i++) {
+			int slot = index(i);
+			if (times[slot] < from)
+				break;
+			if (times[slot] <= to)
+				entries.add(new Entry(values[slot], times[slot]));
+		}
+		return entries;
+	}
+	
+	// slot of the i-th newest value
+	private int index(int i) {
+		return (head - 1 - i + 2 * values.length) % values.length;
+	}
+	
+	public static class Entry {
+		private final String value;
+		private final long time;
+		
+		Entry(String value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+		
+		public String getValue() {
+			return value;
+		}
+		
+		public long getTime() {
+			return time;
+		}
+	}
+	
+}
@@ -25,6 +25,9 @@ import org.edgexfoundry.domain.meta.DeviceObject;
 public class FischertechObject extends DeviceObject {
 
 	private FischertechAttribute attributes;
+	
+	// value transform compiled when the profile is loaded
+	private TransformPlan transformPlan;
 
 	public FischertechObject(DeviceObject object) {
 		this.setName(object.getName());
@@ -32,6 +35,7 @@ public class FischertechObject extends DeviceObject {
 		this.setDescription(object.getDescription());
 		this.setProperties(object.getProperties());
 		this.setAttributes(new FischertechAttribute(object.getAttributes()));
+		this.setTransformPlan(new TransformPlan(object.getProperties() == null ? null : object.getProperties().getValue()));
 	}
 	
 	@Override
@@ -42,6 +46,14 @@ public class FischertechObject extends DeviceObject {
 	public void setAttributes(FischertechAttribute attributes) {
 		this.attributes = attributes;
 	}
+	
+	public TransformPlan getTransformPlan() {
+		return transformPlan;
+	}
+	
+	public void setTransformPlan(TransformPlan transformPlan) {
+		this.transformPlan = transformPlan;
+	}
 
 	@Override
 	public String toString() {
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import org.edgexfoundry.domain.meta.ResourceOperation;
+
+// Profile object bound to a controller interface (M1, I5, S1...) with its resolved get operation
+public class InterfaceBinding {
+	
+	private final FischertechObject object;
+	private final ResourceOperation get;
+	
+	public InterfaceBinding(FischertechObject object, ResourceOperation get) {
+		this.object = object;
+		this.get = get;
+	}
+	
+	public FischertechObject getObject() {
+		return object;
+	}
+	
+	// null when the object has no get operation
+	public ResourceOperation getOperation() {
+		return get;
+	}
+	
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The objects a resource operation reads or writes, the primary one first, with the name each
+// reading is reported under and the key of the operation's cached responses
+public class OperationPlan {
+
+	private final List<FischertechObject> objects;
+	private final List<String> names;
+	private final String key;
+	
+	public OperationPlan(List<FischertechObject> objects, List<String> names) {
+		this.objects = Collections.unmodifiableList(new ArrayList<FischertechObject>(objects));
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.key = this.names.toString().intern();
+	}
+	
+	public List<FischertechObject> getObjects() {
+		return objects;
+	}
+	
+	public List<String> getNames() {
+		return names;
+	}
+	
+	public String getKey() {
+		return key;
+	}
+	
+}
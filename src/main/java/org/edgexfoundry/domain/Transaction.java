@@ -24,14 +24,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.edgexfoundry.domain.core.Reading;
 
+// Completes its future with the readings of every operation once the transaction is sealed and
+// all of its operations have finished. Echoes are readings answered to the caller only, because
+// another operation publishes them, and frames are the TIDs the sets went out on by reading name.
 public class Transaction {	
 	private String transactionId;
 	private List<Reading> readings;
 	private Map<String, Boolean> opIds;
-	private Boolean finished = true;
+	private final List<Reading> echoes = new ArrayList<Reading>();
+	private final Map<String, Integer> frames = new HashMap<String, Integer>();
+	private int pending = 0;
+	private boolean sealed = false;
+	private final CompletableFuture<List<Reading>> future = new CompletableFuture<List<Reading>>();
 	
 	public Transaction() {
 		setTransactionId(UUID.randomUUID().toString());
@@ -42,40 +50,79 @@ public class Transaction {
 	private void setReadings(List<Reading> readings) {
 		this.readings = readings;
 	}
-
+	
 	private void setTransactionId(String transactionId) {
 		this.transactionId = transactionId;
 	}
-
-	public String newOpId() {
+	
+	public synchronized String newOpId() {
 		String opId = UUID.randomUUID().toString();
 		opIds.put(opId, false);
-		finished = false;
+		pending++;
 		return opId;
 	}
 	
-	public void finishOp(String opId, List<Reading> readings) {
-		addReadings(readings);
+	public synchronized void finishOp(String opId, List<Reading> readings) {
+		finishOp(opId, readings, true, null);
+	}
+	
+	public synchronized void finishOp(String opId, List<Reading> readings, boolean publish, Integer frame) {
+		if (!Boolean.FALSE.equals(opIds.get(opId)))
+			return;
+		if (publish)
+			addReadings(readings);
+		else if (readings != null)
+			echoes.addAll(readings);
+		if (frame != null && readings != null)
+			for (Reading reading: readings)
+				frames.put(reading.getName(), frame);
 		opIds.put(opId, true);
-		if (!opIds.values().contains(false))
-			finished = true;
+		pending--;
+		complete();
+	}
+	
+	// no more operations will be added
+	public synchronized void seal() {
+		sealed = true;
+		complete();
+	}
+	
+	public void fail(Throwable cause) {
+		future.completeExceptionally(cause);
+	}
+	
+	private void complete() {
+		if (sealed && pending == 0)
+			future.complete(new ArrayList<Reading>(readings));
 	}
 	
 	public Boolean isFinished() {
-		return finished;
+		return future.isDone();
 	}
-
+	
 	public String getTransactionId() {
 		return transactionId;
 	}
-
-	public List<Reading> getReadings() {
-		return readings;
+	
+	public synchronized List<Reading> getReadings() {
+		return new ArrayList<Reading>(readings);
 	}
-
+	
+	public synchronized List<Reading> getEchoes() {
+		return new ArrayList<Reading>(echoes);
+	}
+	
+	public synchronized Map<String, Integer> getFrames() {
+		return new HashMap<String, Integer>(frames);
+	}
+	
+	public CompletableFuture<List<Reading>> getFuture() {
+		return future;
+	}
+	
 	private void addReadings(List<Reading> readings) {
 		if (readings != null)
 			this.readings.addAll(readings);
 	}
-
+	
 }
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import java.math.BigInteger;
+
+import org.edgexfoundry.domain.meta.PropertyValue;
+
+// A PropertyValue resolved once when the profile is loaded, so ObjectTransform can work on longs.
+// Methods return null when the plan cannot express the value and the caller falls back to the
+// BigInteger implementation, which gives the same results.
+public class TransformPlan {
+
+	// hex digits that fit in a long without reaching the sign bit
+	private static final int MAX_DIGITS = 15;
+	
+	private final PropertyValue value;
+	private final boolean compiled;
+	
+	private int size;
+	private int word;
+	private boolean lsb;
+	private boolean raw;
+	private boolean masked;
+	private long mask;
+	private boolean shifted;
+	private int shift;
+	private boolean signed;
+	private long complement;
+	private boolean based;
+	private double base;
+	private double scale;
+	private double offset;
+	private boolean floating;
+	
+	public TransformPlan(PropertyValue value) {
+		this.value = value;
+		boolean compiled;
+		try {
+			compiled = compile();
+		} catch (RuntimeException e) {
+			compiled = false;
+		}
+		this.compiled = compiled;
+	}
+	
+	private boolean compile() {
+		if (value == null || value.getType() == null || value.getSigned() == null)
+			return false;
+		size = value.size();
+		word = Math.min(value.word() * 2, size);
+		if (size < 1 || size > MAX_DIGITS || word < 2 || word % 2 != 0)
+			return false;
+		lsb = value.LSB();
+		raw = value.getLSB() != null;
+		BigInteger bits = value.mask();
+		if (bits.signum() < 0 || bits.bitLength() > 62)
+			return false;
+		masked = !bits.equals(BigInteger.ZERO);
+		mask = bits.longValue();
+		shifted = !value.shift().equals(0);
+		shift = value.shift();
+		if (shift < 0 || shift > 62)
+			return false;
+		signed = value.getSigned();
+		complement = (1L << (size * 4)) - 1;
+		based = !value.base().equals(0);
+		base = value.base();
+		scale = value.scale();
+		offset = value.offset();
+		String type = value.getType().toLowerCase();
+		floating = type.equals("f") || type.equals("float");
+		return true;
+	}
+	
+	public PropertyValue getValue() {
+		return value;
+	}
+	
+	public String transform(String result, boolean transformData) {
+		if (!compiled)
+			return null;
+		double floatValue;
+		if (raw) {
+			long val = parse(result);
+			if (val < 0)
+				return null;
+			if (masked)
+				val = val & mask;
+			if (shifted)
+				val = val >> shift;
+			if (signed && 64 - Long.numberOfLeadingZeros(val) == size * 4)
+				val = val - complement;
+			if (!transformData)
+				return String.valueOf((int) val);
+			floatValue = val;
+		} else {
+			floatValue = Float.parseFloat(result);
+		}
+		if (based)
+			floatValue = Math.pow(base, floatValue);
+		floatValue = floatValue * scale;
+		floatValue = floatValue + offset;
+		if (floating)
+			return String.valueOf(floatValue);
+		return String.valueOf(Math.round(floatValue));
+	}
+	
+	public String maskedValue(String val, String result) {
+		if (!compiled)
+			return null;
+		long intValue = parse(val);
+		long resultValue = parse(result);
+		if (intValue < 0 || resultValue < 0)
+			return null;
+		return hex((int) ((resultValue & ~mask) | (intValue << shift)));
+	}
+	
+	public String format(String arg) {
+		if (!compiled)
+			return null;
+		long val = parse(arg);
+		if (val < 0)
+			return null;
+		return hex((int) val);
+	}
+	
+	// Value of a hex ("0x...") or decimal string with the word and byte order applied, -1 when it
+	// needs more than a long
+	private long parse(String result) {
+		long digits;
+		int length;
+		if (result.startsWith("0x")) {
+			length = result.length() - 2;
+			if (length > MAX_DIGITS)
+				return -1;
+			digits = 0;
+			for (int i = 2; i < result.length(); i++) {
+				int digit = Character.digit(result.charAt(i), 16);
+				if (digit < 0)
+					throw new NumberFormatException("For input string: \"" + result + "\"");
+				digits = (digits << 4) | digit;
+			}
+		} else {
+			// read as the hex string of the 32 bit value, padded to the size
+			digits = Integer.decode(result) & 0xFFFFFFFFL;
+			length = Math.max(size, Math.max(1, (67 - Long.numberOfLeadingZeros(digits)) / 4));
+		}
+		
+		long val = 0;
+		for (int i = 0; i < length / word; i++) {
+			int start = i * word;
+			int finish = start + word;
+			long thisword = 0;
+			for (int j = 0; j < word / 2; j++) {
+				// hex digit index of the byte within the string
+				int index = lsb ? finish - j * 2 - 2 : start + j * 2;
+				thisword = ((digits >>> ((length - 2 - index) * 4)) & 0xFF) + (thisword << 8);
+			}
+			val = thisword + (val << (word * 4));
+		}
+		return val;
+	}
+	
+	// upper case hex padded with zeros to the size
+	private String hex(int val) {
+		int digits = Math.max(size, Math.max(1, (35 - Integer.numberOfLeadingZeros(val)) / 4));
+		char[] chars = new char[digits];
+		for (int i = digits - 1; i >= 0; i--) {
+			chars[i] = Character.toUpperCase(Character.forDigit(val & 0xF, 16));
+			val = val >>> 4;
+		}
+		return new String(chars);
+	}
+	
+}
@@ -19,122 +19,68 @@
  *******************************************************************************/
 package org.edgexfoundry.domain;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-import org.springframework.stereotype.Component;
+import org.edgexfoundry.fishX1.TA_INPUT;
+import org.edgexfoundry.fishX1.TA_OUTPUT;
 
-@Component
+// Controller transport area, the output structure written each cycle and the published input snapshot
 public class TransportArea {
 	
-	public TA_OUTPUT getTA_OUTPUT() {
-		return new TA_OUTPUT();
+	// only written by the I/O thread, other threads read the published motor power
+	private final TA_OUTPUT output = new TA_OUTPUT();
+	private final AtomicIntegerArray power = new AtomicIntegerArray(4);
+	
+	// front is read lock-free by any thread and never written once published, back is only touched
+	// by the I/O thread and replaced on every publish since a reader may still hold the old front
+	private volatile TA_INPUT input = new TA_INPUT();
+	private TA_INPUT back = new TA_INPUT();
+	// time in milliseconds the front snapshot was published, 0 before the first reply
+	private volatile long inputTime = 0;
+	
+	public TA_OUTPUT getOutput() {
+		return output;
 	}
 	
-	public TA_INPUT getTA_INPUT(String input) {
-		return new TA_INPUT(input);
+	// Motor power as of the last frame prepared by the I/O thread
+	public int getPower(int motorNum) {
+		return power.get(motorNum - 1);
 	}
 	
-	public class TA_OUTPUT {
-		public List<Integer> cnt_reset = Arrays.asList(new Integer[4]);
-		public List<Integer> master = Arrays.asList(new Integer[4]);
-		public List<Integer> duty = Arrays.asList(new Integer[8]);
-		public List<Integer> distance = Arrays.asList(new Integer[4]);
-		public List<Integer> reserved = Arrays.asList(new Integer[4]);
-		
-		public TA_OUTPUT() {
-			for(int i = 0; i < cnt_reset.size(); i++)
-				cnt_reset.set(i, 0);
-			for(int i = 0; i < master.size(); i++)
-				master.set(i, 0);
-			for(int i = 0; i < duty.size(); i++)
-				duty.set(i, 0);
-			for(int i = 0; i < distance.size(); i++)
-				distance.set(i, 0);
-			for(int i = 0; i < reserved.size(); i++)
-				reserved.set(i, 0);
-		}
-		
-		public void setDuty(int motor, int cw, int ccw) {
-			duty.set(motor * 2, cw);
-			duty.set(motor * 2 + 1, ccw);
-		}
-		
-		@Override
-		public String toString() {
-			String out = "";
-			for(int i = 0; i < cnt_reset.size(); i++)
-				out += String.format("%04X", cnt_reset.get(i));
-			for(int i = 0; i < master.size(); i++)
-				out += String.format("%02X", master.get(i));
-			for(int i = 0; i < duty.size(); i++)
-				out += String.format("%04X", duty.get(i));
-			for(int i = 0; i < distance.size(); i++)
-				out += String.format("%04X", distance.get(i));
-			for(int i = 0; i < reserved.size(); i++)
-				out += String.format("%04X", reserved.get(i));
-			return out;
-		}
+	public void publishOutput() {
+		for (int i = 0; i < power.length(); i++)
+			power.set(i, output.getDuty(i + 1));
 	}
 	
-	public class TA_INPUT {
-		public List<Integer> uni = Arrays.asList(new Integer[8]);
-		public List<Integer> cnt_in = Arrays.asList(new Integer[4]);
-		public List<Integer> counter = Arrays.asList(new Integer[4]);
-		public Integer display_button_left = 0;
-		public Integer display_button_right = 0;
-		public List<Integer> cnt_resetted = Arrays.asList(new Integer[4]);
-		public List<Integer> motor_pos_reached = Arrays.asList(new Integer[4]);
-		public List<Integer> reserved = Arrays.asList(new Integer[16]);
-		
-		public TA_INPUT(String ta_input) {
-			for(int i = 0; i < uni.size(); i++)
-				uni.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-			ta_input = ta_input.substring(uni.size()*4);
-			for(int i = 0; i < cnt_in.size(); i++)
-				cnt_in.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-			ta_input = ta_input.substring(cnt_in.size()*4);
-			for(int i = 0; i < counter.size(); i++)
-				counter.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-			ta_input = ta_input.substring(counter.size()*4);
-			display_button_left = Integer.parseInt(ta_input.substring(0,4), 16);
-			display_button_right = Integer.parseInt(ta_input.substring(4,8), 16);
-			ta_input = ta_input.substring(2*4);
-			for(int i = 0; i < cnt_resetted.size(); i++)
-				cnt_resetted.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-			ta_input = ta_input.substring(cnt_resetted.size()*4);
-			for(int i = 0; i < motor_pos_reached.size(); i++)
-				motor_pos_reached.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-			ta_input = ta_input.substring(motor_pos_reached.size()*4);
-			for(int i = 0; i < reserved.size(); i++)
-				reserved.set(i, Integer.parseInt(ta_input.substring(i,i+1), 16));
-		}
-
-		
-		@Override
-		public String toString() {
-			String out = "uni: ";
-			for(int i = 0; i < uni.size(); i++)
-				out += String.format("%04d, ", uni.get(i));
-			out += "\ncnt_in: ";
-			for(int i = 0; i < cnt_in.size(); i++)
-				out += String.format("%04d, ", cnt_in.get(i));
-			out += "\ncounter: ";
-			for(int i = 0; i < counter.size(); i++)
-				out += String.format("%04d, ", counter.get(i));
-			out += "\ndisplay_button_left: " + display_button_left;
-			out += "\ndisplay_button_right: " + display_button_right;
-			out += "\ncnt_resetted: ";
-			for(int i = 0; i < cnt_resetted.size(); i++)
-				out += String.format("%04d, ", cnt_resetted.get(i));
-			out += "\nmotor_pos_reached: ";
-			for(int i = 0; i < motor_pos_reached.size(); i++)
-				out += String.format("%04d, ", motor_pos_reached.get(i));
-			out += "\nreserved: ";
-			for(int i = 0; i < reserved.size(); i++)
-				out += String.format("%01d, ", uni.get(i));
-			return out;
-		}
+	// Latest published input snapshot, it stays consistent for as long as the caller holds it
+	public TA_INPUT getInput() {
+		return input;
+	}
+	
+	public long getInputTime() {
+		return inputTime;
+	}
+	
+	// Input structure for the I/O thread to decode the next reply into
+	public TA_INPUT getNextInput() {
+		return back;
+	}
+	
+	// Make the decoded input the front snapshot, the next reply is decoded into a fresh structure
+	public TA_INPUT publishInput() {
+		TA_INPUT published = back;
+		back = new TA_INPUT();
+		input = published;
+		inputTime = System.currentTimeMillis();
+		return published;
+	}
+	
+	public void reset() {
+		output.reset();
+		publishOutput();
+		input = new TA_INPUT();
+		back = new TA_INPUT();
+		inputTime = 0;
 	}
 	
 }
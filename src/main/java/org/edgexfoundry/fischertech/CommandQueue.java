@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bounded, lock-free queue of output commands, many REST producers and the I/O thread as the only consumer
+public class CommandQueue {
+	
+	private final Queue<OutputCommand> queue = new ConcurrentLinkedQueue<OutputCommand>();
+	
+	private final AtomicInteger size = new AtomicInteger();
+	
+	private final int capacity;
+	
+	public CommandQueue(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	public boolean offer(OutputCommand command) {
+		if (size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			return false;
+		}
+		queue.offer(command);
+		return true;
+	}
+	
+	public OutputCommand poll() {
+		OutputCommand command = queue.poll();
+		if (command != null)
+			size.decrementAndGet();
+		return command;
+	}
+	
+	public int size() {
+		return size.get();
+	}
+	
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+}
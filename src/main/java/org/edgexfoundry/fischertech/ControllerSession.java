@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.edgexfoundry.domain.FischertechDevice;
+import org.edgexfoundry.domain.TransportArea;
+import org.edgexfoundry.exception.controller.NotFoundException;
+import org.edgexfoundry.exception.controller.ServiceException;
+import org.edgexfoundry.fishX1.FishX1Packet;
+import org.edgexfoundry.fishX1.FishX1Reply;
+import org.edgexfoundry.fishX1.FishX1Transport;
+import org.edgexfoundry.fishX1.FrameWindow;
+import org.edgexfoundry.fishX1.TA_INPUT;
+import org.edgexfoundry.fishX1.TA_OUTPUT;
+import org.edgexfoundry.support.logging.client.EdgeXLogger;
+import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+
+// Connection to a single ROBO TX controller, owns the port, the transport area and the I/O loop
+public class ControllerSession {
+
+	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(ControllerSession.class);
+
+	// value reported on the first universal input when the controller needs to be reconfigured
+	private static final int RECOVER_SIGNAL = 0x3A98;
+
+	private final String key;
+	private final FishX1Transport transport;
+	private final FischertechDriver driver;
+
+	private final TransportArea TA = new TransportArea();
+	private final CommandQueue commands;
+	private final CycleScheduler scheduler;
+	private final InputFilter inputs;
+
+	// commands applied to the frame being sent, acknowledged once it is written
+	private final List<OutputCommand> applied = new ArrayList<OutputCommand>();
+	
+	// last command per target (SAFETY, motors 1-4) in the frame being prepared
+	private final OutputCommand[] latest = new OutputCommand[5];
+	private volatile long coalesced = 0;
+
+	// owned by the I/O thread, changed through the command queue
+	private volatile boolean safety = true;
+	private volatile boolean reconfigure = false;
+	private volatile boolean connected = false;
+
+	private volatile int sid = 0x00;
+	private int tid = 0x01;
+
+	private volatile FischertechDevice device;
+
+	public ControllerSession(String key, FishX1Transport transport, FischertechDriver driver) {
+		this.key = key;
+		this.transport = transport;
+		this.driver = driver;
+		this.commands = new CommandQueue(driver.getCommandQueueSize());
+		this.scheduler = new CycleScheduler(driver.getCyclePeriod(), driver.getIdlePeriod(), driver.getIdleAfter());
+		this.inputs = driver.newInputFilter();
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getName() {
+		return transport.getName();
+	}
+
+	public boolean isConnected() {
+		return connected;
+	}
+
+	public FischertechDevice getDevice() {
+		return device;
+	}
+
+	public void setDevice(FischertechDevice device) {
+		this.device = device;
+	}
+
+	public TransportArea getTransportArea() {
+		return TA;
+	}
+
+	public Map<String, Object> getCycleStatistics() {
+		Map<String, Object> statistics = scheduler.getStatistics();
+		statistics.put("suppressedInputEvents", inputs.getSuppressed());
+		statistics.put("coalescedCommands", coalesced);
+		return statistics;
+	}
+
+	// Open the port and configure the controller, then start the I/O loop on its own thread
+	public boolean open() {
+		transport.open();
+		logger.info("Port is " + (transport.isOpen() ? "open" : "closed") + " for: " + transport.getName());
+		if (!transport.isOpen())
+			return false;
+
+		TA.reset();
+		connected = true;
+
+		if (!configure()) {
+			logger.error("Error initializing device " + transport.getName());
+			close();
+			return false;
+		}
+
+		// the I/O loop must be running before the init command queues its sets
+		driver.getExecutor().startThread("fischertech-io-" + key, () -> connection());
+		return true;
+	}
+
+	public void close() {
+		if (!connected)
+			return;
+		connected = false;
+		transport.close();
+		failCommands();
+		driver.sessionClosed(this);
+	}
+
+	// Hand the command to the I/O thread and wait for the frame it goes out on. A command the caller
+	// stops waiting for is withdrawn, so it never reaches the outputs after a failure was reported.
+	public int submit(OutputCommand command) {
+		if (!connected)
+			throw new NotFoundException("Fischertechnik device", key);
+		if (!commands.offer(command))
+			throw new ServiceException(new IllegalStateException("Command queue full for Fischertechnik device " + key));
+		// close() may have drained the queue before the offer landed
+		if (!connected && command.cancel(new NotFoundException("Fischertechnik device", key)))
+			throw new NotFoundException("Fischertechnik device", key);
+		scheduler.wakeup();
+		int frame;
+		try {
+			frame = command.awaitFrame(driver.getCommandTimeout());
+		} catch (InterruptedException e) {
+			if (command.cancel(e)) {
+				Thread.currentThread().interrupt();
+				throw new ServiceException(e);
+			}
+			Thread.interrupted();
+			try {
+				frame = awaitClaimed(command);
+			} finally {
+				Thread.currentThread().interrupt();
+			}
+		} catch (ExecutionException e) {
+			throw new ServiceException(e.getCause());
+		} catch (TimeoutException e) {
+			if (command.cancel(e))
+				throw new ServiceException(e);
+			frame = awaitClaimed(command);
+		}
+		logger.debug("Command for output " + command.getTarget() + " applied " + command.getAppliedValue() + " (requested "
+				+ command.getValue() + ") on frame " + frame + " of " + key);
+		return frame;
+	}
+	
+	// The I/O thread claimed the command as the wait ran out, its frame is being written
+	private int awaitClaimed(OutputCommand command) {
+		try {
+			return command.awaitFrame(driver.getReplyTimeout());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException(e);
+		} catch (ExecutionException e) {
+			throw new ServiceException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	private void failCommands() {
+		OutputCommand command;
+		while ((command = commands.poll()) != null)
+			command.cancel(new NotFoundException("Fischertechnik device", "disconnected"));
+	}
+
+	private boolean configure() {
+		FishX1Packet packet = new FishX1Packet(5);
+		return writeToDevice(packet);
+	}
+
+	protected void connection() {
+		if (driver.getPipelineDepth() > 1) {
+			pipelinedConnection();
+			return;
+		}
+		FishX1Packet packet = new FishX1Packet(2, tid, sid);
+		TA_OUTPUT ta_output = TA.getOutput();
+		packet.setOutput(ta_output);
+		while (connected) {
+			scheduler.awaitNextCycle();
+			packet.update(tid, sid);
+			applyCommands(ta_output);
+			applySafety(ta_output, TA.getInput());
+			TA.publishOutput();
+			try {
+				if (writeToDevice(packet))
+					acknowledgeCommands(packet.getTID(), ta_output);
+			} catch (Exception e) {
+				close();
+			}
+			failApplied();
+		}
+	}
+
+	// Keep up to pipelineDepth frames in flight, replies are matched by a separate reader thread
+	private void pipelinedConnection() {
+		long replyTimeout = driver.getReplyTimeout();
+		FrameWindow window = new FrameWindow(driver.getPipelineDepth());
+		window.reset((tid - 1) & 0xFFFF);
+		driver.getExecutor().startThread("fischertech-rx-" + key, () -> receiveFrames(window));
+
+		FishX1Packet packet = new FishX1Packet(2, tid, sid);
+		FishX1Packet config = new FishX1Packet(5);
+		TA_OUTPUT ta_output = TA.getOutput();
+		packet.setOutput(ta_output);
+		while (connected) {
+			scheduler.awaitNextCycle();
+			try {
+				if (!window.acquire(replyTimeout)) {
+					logger.error("Reply timeout from device " + transport.getName() + " with " + window.inFlight() + " frames in flight");
+					window.reset((tid - 1) & 0xFFFF);
+					continue;
+				}
+				FishX1Packet next = packet;
+				if (reconfigure) {
+					reconfigure = false;
+					next = config;
+				} else {
+					applyCommands(ta_output);
+					applySafety(ta_output, TA.getInput());
+					TA.publishOutput();
+				}
+				next.update(tid, sid);
+				window.sent(tid);
+				sendFrame(next);
+				acknowledgeCommands(next.getTID(), ta_output);
+				tid = (tid + 1) & 0xFFFF;
+			} catch (Exception e) {
+				close();
+			}
+			failApplied();
+		}
+	}
+
+	private void receiveFrames(FrameWindow window) {
+		long replyTimeout = driver.getReplyTimeout();
+		while (connected) {
+			FishX1Reply reply = transport.read(replyTimeout);
+			if (reply == null) {
+				if (!transport.isOpen()) {
+					logger.error("Could not read from device " + transport.getName());
+					close();
+					return;
+				}
+				continue;
+			}
+			if (!reply.isValid() || !window.complete(reply.getTID())) {
+				logger.debug("Discarding unmatched reply from device " + transport.getName());
+				continue;
+			}
+			sid = reply.getSID();
+			if (handleReply(reply))
+				reconfigure = true;
+		}
+	}
+
+	// Drain the commands queued since the last frame, commands for the same target collapse to the
+	// last one. The I/O thread is the only writer of the output.
+	private void applyCommands(TA_OUTPUT ta_output) {
+		OutputCommand command;
+		while ((command = commands.poll()) != null) {
+			// withdrawn by a caller that timed out or by close()
+			if (!command.claim())
+				continue;
+			if (latest[command.getTarget()] != null)
+				coalesced++;
+			latest[command.getTarget()] = command;
+			applied.add(command);
+		}
+		if (applied.isEmpty())
+			return;
+		for (int target = 0; target < latest.length; target++) {
+			command = latest[target];
+			if (command == null)
+				continue;
+			if (command.isSafety())
+				safety = command.getValue() == 1;
+			else
+				ta_output.setDuty(target, command.getValue());
+			command.lead();
+			latest[target] = null;
+		}
+		scheduler.markActivity();
+	}
+
+	private void applySafety(TA_OUTPUT ta_output, TA_INPUT ta_input) {
+		if (safety) {
+			if (ta_input.getUni(7) > 0) {
+				if (ta_output.getDuty(1) < 0)
+					ta_output.setDuty(1, 0);//8);
+			}
+			if (ta_input.getUni(8) > 0) {
+				if (ta_output.getDuty(1) > 0)
+					ta_output.setDuty(1, 0);//-8);
+			}
+			if (ta_input.getUni(5) == 0) {
+				if (ta_output.getDuty(2) < 0)
+					ta_output.setDuty(2, 0);//127);
+			}
+			if (ta_input.getUni(6) == 0) {
+				if (ta_output.getDuty(2) > 0)
+					ta_output.setDuty(2, 0);//-127);
+			}
+		}
+	}
+
+	// Every caller learns the value its target actually went out with, including superseded ones
+	private void acknowledgeCommands(int frame, TA_OUTPUT ta_output) {
+		for (int i = 0; i < applied.size(); i++) {
+			OutputCommand command = applied.get(i);
+			if (command.isSafety())
+				command.acknowledge(frame, safety ? 1 : 0);
+			else
+				command.acknowledge(frame, ta_output.getDuty(command.getTarget()));
+		}
+		applied.clear();
+	}
+
+	private void failApplied() {
+		for (int i = 0; i < applied.size(); i++)
+			applied.get(i).fail(new NotFoundException("Fischertechnik device", "disconnected"));
+		applied.clear();
+	}
+
+	private void sendFrame(FishX1Packet packet) {
+		byte[] frame = packet.getFrame();
+		transport.write(frame, packet.getFrameLength());
+	}
+
+	private boolean writeToDevice(FishX1Packet packet) {
+		sendFrame(packet);
+
+		FishX1Reply reply = transport.read(driver.getReplyTimeout());
+		if (reply == null || !reply.isValid()) {
+			logger.error("Could not read from device " + transport.getName());
+			close();
+			return false;
+		}
+
+		tid = (reply.getTID() + 1) & 0xFFFF;
+		sid = reply.getSID();
+
+		if (handleReply(reply)) {
+			// attempt to recover connection
+			if (!configure())
+				close();
+		}
+
+		return true;
+	}
+
+	// Publish the input carried by a reply, returns true if the controller asks to be reconfigured
+	private boolean handleReply(FishX1Reply reply) {
+		if (!reply.hasInput())
+			return false;
+		TA_INPUT ta_input = TA.getNextInput();
+		reply.readInput(ta_input);
+		TA.publishInput();
+		int events = inputs.update(ta_input.getMask(), System.nanoTime());
+		if (events != 0 || inputs.isSettling())
+			scheduler.markActivity();
+		int state = inputs.getState();
+		for (int bits = events; bits != 0; bits &= bits - 1) {
+			int bit = Integer.numberOfTrailingZeros(bits);
+			driver.receive(this, TA_INPUT.getInterfaceName(bit), ((state >> bit) & 1) == 1 ? "1" : "0");
+		}
+		return ta_input.uni[0] == RECOVER_SIGNAL;
+	}
+
+}
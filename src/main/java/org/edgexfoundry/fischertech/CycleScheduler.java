@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Paces the I/O loop: a fast cycle period while inputs change or commands are pending,
+// backing off to an idle period once the line has been quiet for a while
+public class CycleScheduler {
+	
+	private final long fastPeriod;
+	private final long idlePeriod;
+	private final long idleAfter;
+	
+	private volatile Thread owner;
+	private volatile boolean woken = false;
+	private volatile boolean idle = false;
+	
+	private volatile long lastActivity = System.nanoTime();
+	
+	// only touched by the I/O thread
+	private long lastStart = 0;
+	
+	private volatile long cycles = 0;
+	private volatile long periodSum = 0;
+	private volatile long jitterCount = 0;
+	private volatile long jitterSum = 0;
+	private volatile long jitterMax = 0;
+	
+	// periods in milliseconds, 0 runs the loop as fast as the serial line allows
+	public CycleScheduler(long fastPeriod, long idlePeriod, long idleAfter) {
+		this.fastPeriod = TimeUnit.MILLISECONDS.toNanos(fastPeriod);
+		this.idlePeriod = TimeUnit.MILLISECONDS.toNanos(Math.max(fastPeriod, idlePeriod));
+		this.idleAfter = TimeUnit.MILLISECONDS.toNanos(idleAfter);
+	}
+	
+	// Called by the I/O thread at the top of each cycle, returns once the next cycle is due
+	public void awaitNextCycle() {
+		owner = Thread.currentThread();
+		long now = System.nanoTime();
+		idle = now - lastActivity > idleAfter;
+		long period = idle ? idlePeriod : fastPeriod;
+		if (lastStart != 0) {
+			long deadline = lastStart + period;
+			boolean early = false;
+			while (now < deadline) {
+				if (woken) {
+					early = true;
+					break;
+				}
+				LockSupport.parkNanos(this, deadline - now);
+				now = System.nanoTime();
+			}
+			long actual = now - lastStart;
+			cycles++;
+			periodSum += actual;
+			if (!early && period > 0) {
+				long jitter = actual - period;
+				jitterCount++;
+				jitterSum += jitter;
+				if (jitter > jitterMax)
+					jitterMax = jitter;
+			}
+		}
+		if (woken) {
+			woken = false;
+			markActivity();
+		}
+		lastStart = now;
+	}
+	
+	// Called by the I/O or reader thread when inputs changed or commands were applied
+	public void markActivity() {
+		lastActivity = System.nanoTime();
+		idle = false;
+	}
+	
+	// Called from any thread when work is waiting, e.g. a queued command
+	public void wakeup() {
+		woken = true;
+		Thread thread = owner;
+		if (thread != null)
+			LockSupport.unpark(thread);
+	}
+	
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		long count = cycles;
+		long jitters = jitterCount;
+		stats.put("mode", idle ? "idle" : "fast");
+		stats.put("targetPeriodMs", toMillis(idle ? idlePeriod : fastPeriod));
+		stats.put("cycles", count);
+		stats.put("meanPeriodMs", count == 0 ? 0.0 : toMillis(periodSum / count));
+		stats.put("meanJitterMs", jitters == 0 ? 0.0 : toMillis(jitterSum / jitters));
+		stats.put("maxJitterMs", toMillis(jitterMax));
+		return stats;
+	}
+	
+	private double toMillis(long nanos) {
+		return nanos / 1000000.0;
+	}
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PreDestroy;
 
@@ -32,19 +33,24 @@ import org.edgexfoundry.data.ProfileStore;
 import org.edgexfoundry.domain.FischertechAttribute;
 import org.edgexfoundry.domain.FischertechDevice;
 import org.edgexfoundry.domain.FischertechObject;
+import org.edgexfoundry.domain.InterfaceBinding;
 import org.edgexfoundry.domain.ScanList;
 import org.edgexfoundry.domain.TransportArea;
 import org.edgexfoundry.domain.meta.Addressable;
 import org.edgexfoundry.domain.meta.OperatingState;
 import org.edgexfoundry.domain.meta.ResourceOperation;
 import org.edgexfoundry.exception.controller.NotFoundException;
-import org.edgexfoundry.fishX1.FishX1Packet;
+import org.edgexfoundry.fishX1.EventSerialTransport;
+import org.edgexfoundry.fishX1.FishX1Transport;
+import org.edgexfoundry.fishX1.SerialTransport;
+import org.edgexfoundry.fishX1.SimulatedTransport;
 import org.edgexfoundry.fishX1.TA_INPUT;
-import org.edgexfoundry.fishX1.TA_OUTPUT;
 import org.edgexfoundry.handler.FischertechHandler;
+import org.edgexfoundry.handler.OperationExecutor;
 import org.edgexfoundry.support.logging.client.EdgeXLogger;
 import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.fazecast.jSerialComm.SerialPort;
@@ -67,39 +73,82 @@ public class FischertechDriver {
 	FischertechHandler handler;
 	
 	@Autowired
-	TransportArea TA;
+	OperationExecutor executor;
 	
 	private Boolean initializer = true;
 	
-	private SerialPort client = null;
-
-	private int serialBaudRate = 38400;
-	private int serialDataBits = 8;
-	private int serialStopBits = 1;
-	private int serialParity   = 0;
+	// address discovered before controllers were told apart by port
+	private static final String LEGACY_ADDRESS = "Punching Machine";
+	
+	// one session per controller, keyed by the system port name held in the addressable path
+	private final Map<String, ControllerSession> sessions = new ConcurrentHashMap<String, ControllerSession>();
+	
+	// serial for polled semi-blocking reads, event for data-available listener driven reads,
+	// sim for in-process simulated controllers
+	@Value("${fischertech.transport:serial}")
+	private String transportType;
+	
+	// simulated controllers opened when the transport is sim
+	@Value("${fischertech.sim.controllers:1}")
+	private int simControllers;
+	
+	// simulated reply latency in milliseconds
+	@Value("${fischertech.sim.latency:5}")
+	private long simLatency;
+	
+	// probability of a simulated reply being lost or arriving corrupted
+	@Value("${fischertech.sim.drop:0}")
+	private double simDropRate;
+	
+	@Value("${fischertech.sim.corrupt:0}")
+	private double simCorruptRate;
 	
-	Boolean safety = true;
+	// frames kept in flight, 1 is stop-and-wait
+	@Value("${fischertech.pipeline.depth:1}")
+	private int pipelineDepth;
 	
-	Boolean connected = false;
+	// time in milliseconds to wait for a reply before giving up on the frames in flight
+	@Value("${fischertech.reply.timeout:500}")
+	private long replyTimeout;
 	
-	private TA_OUTPUT ta_output;
+	// cycle pacing in milliseconds, 0 polls as fast as the serial line allows
+	@Value("${fischertech.cycle.period:0}")
+	private long cyclePeriod;
 	
-	private TA_INPUT ta_input;
+	@Value("${fischertech.cycle.idle.period:0}")
+	private long idlePeriod;
 	
-	private FischertechDevice device;
+	// quiet time in milliseconds before the loop backs off to the idle period
+	@Value("${fischertech.cycle.idle.after:5000}")
+	private long idleAfter;
+	
+	// input filters as a comma separated value per input (I1-I8, C1-C4) or a single value for all:
+	// debounce and minimum event interval in milliseconds, edge is rising, falling or both
+	@Value("${fischertech.input.debounce:0}")
+	private String inputDebounce;
+	
+	@Value("${fischertech.input.edge:both}")
+	private String inputEdge;
+	
+	@Value("${fischertech.input.interval:0}")
+	private String inputInterval;
+	
+	@Value("${fischertech.command.queue:64}")
+	private int commandQueueSize;
+	
+	// maximum time in milliseconds a set waits for its command to go out on a frame
+	@Value("${fischertech.command.timeout:1000}")
+	private long commandTimeout;
 	
 	public ScanList discover() {
 		ScanList scan = new ScanList();
-		Map<String, String> newDevice = new HashMap<String, String>();
-		newDevice.put("name", "Fischertechnik");
-		newDevice.put("address", "Punching Machine");
-		
-		if (!connected) {
-			initialize();
-			if (connected)
-				scan.add(newDevice);
+		for (ControllerSession session: openSessions()) {
+			Map<String, String> newDevice = new HashMap<String, String>();
+			newDevice.put("name", "Fischertechnik");
+			newDevice.put("address", session.getKey());
+			newDevice.put("interface", session.getName());
+			scan.add(newDevice);
 		}
-		
 		return scan;
 	}
 	
@@ -109,229 +158,284 @@ public class FischertechDriver {
 	// value is string to be written or null
 	public void process(ResourceOperation operation, FischertechDevice device, FischertechObject object, String value, String transactionId, String opId) {
 		String result = "";
+		OutputCommand command = null;
 		
-		result = processCommand(operation.getOperation(), device.getAddressable(), object.getAttributes(), value);
-		if (this.device == null) {
-			this.device = device;
+		if (operation.getOperation().equals("set")) {
+			command = submitCommand(device.getAddressable(), object.getAttributes(), value);
+			result = String.valueOf(command.getAppliedValue());
+		} else {
+			result = processCommand(operation.getOperation(), device.getAddressable(), object.getAttributes(), value);
 		}
+		ControllerSession session = getSession(device.getAddressable());
+		if (session != null && session.getDevice() == null)
+			session.setDevice(device);
 		
+		// only the command that went out for its target stores and publishes the value, the ones it
+		// replaced in the same frame just report it
+		if (command != null && !command.isLeading()) {
+			handler.completeTransaction(transactionId, opId, objectCache.build(device, operation, result), false, command.getFrame());
+			return;
+		}
 		objectCache.put(device, operation, result);
-		handler.completeTransaction(transactionId, opId, objectCache.getResponses(device, operation));
+		handler.completeTransaction(transactionId, opId, objectCache.getResponses(device, operation), true,
+				(command != null) ? command.getFrame() : null);
 	}
 
 	// Modify this function as needed to pass necessary metadata from the device and its profile to the driver interface
 	public String processCommand(String operation, Addressable addressable, FischertechAttribute attributes, String value) {
-		if (!connected) {
-			initialize();
-			if (!connected)
-				throw new NotFoundException("Fischertechnik device", addressable.getName());
-		}
-			
+		if (operation.equals("set"))
+			return String.valueOf(submitCommand(addressable, attributes, value).getAppliedValue());
+		
+		ControllerSession session = requireSession(addressable);
 		String address = addressable.getPath();
 		String intface = addressable.getAddress();
 		logger.debug("ProcessCommand: " + operation + ", interface: " + intface + ", address: " + address + ", attributes: " + attributes.getInterfaceName() + ", value: " + value );
 		String result = "";
 		
-		if (operation.equals("set")) {
-			if (attributes.getInterfaceName().startsWith("M")) {
-				int motorNum = Integer.parseInt(attributes.getInterfaceName().substring(1));
-				synchronized(ta_output) {
-					ta_output.setDuty(motorNum, Integer.parseInt(value));
-					result = value;
-				}
-			} else if (attributes.getInterfaceName().equals("S1")) {
-				safety = (Integer.parseInt(value) == 1) ? true : false;
-				result = safety ? "1" : "0";
-			} else {
-				throw new NotFoundException("Fischertech interface", attributes.getInterfaceName());
-			}
-		} else {
-			int ioNum = Integer.parseInt(attributes.getInterfaceName().substring(1));
-			if (attributes.getInterfaceName().startsWith("M")) {
-				synchronized(ta_output) {
-					result = String.valueOf(ta_output.getDuty(ioNum));
-				}
-			} else if (attributes.getInterfaceName().startsWith("I")) {
-				synchronized(ta_input) {
-					result = String.valueOf(ta_input.getUni(ioNum));
-				}
-			}
+		TransportArea TA = session.getTransportArea();
+		int ioNum = Integer.parseInt(attributes.getInterfaceName().substring(1));
+		if (attributes.getInterfaceName().startsWith("M")) {
+			result = String.valueOf(TA.getPower(ioNum));
+		} else if (attributes.getInterfaceName().startsWith("I")) {
+			result = String.valueOf(TA.getInput().getUni(ioNum));
 		}
 		
 		return result;
 	}
 	
-	private void receive(String interfaceName, String value) {
-		logger.debug("Event detected for: " + interfaceName + " value: " + value);
+	// Value of an input as of the controller's last reply if that arrived within maxAge
+	// milliseconds, null for other interfaces or without a recent reply. The I/O loop refreshes
+	// the snapshot every cycle, whether or not the input changed.
+	public String getInput(Addressable addressable, FischertechAttribute attributes, long maxAge) {
+		if (attributes == null || attributes.getInterfaceName() == null || !attributes.getInterfaceName().startsWith("I"))
+			return null;
+		ControllerSession session = getSession(addressable);
+		if (session == null)
+			return null;
+		TransportArea TA = session.getTransportArea();
+		if (System.currentTimeMillis() - TA.getInputTime() > maxAge)
+			return null;
+		return String.valueOf(TA.getInput().getUni(Integer.parseInt(attributes.getInterfaceName().substring(1))));
+	}
+	
+	// Queue a motor or safety set and wait for the frame it goes out on
+	private OutputCommand submitCommand(Addressable addressable, FischertechAttribute attributes, String value) {
+		ControllerSession session = requireSession(addressable);
+		logger.debug("ProcessCommand: set, address: " + addressable.getPath() + ", attributes: " + attributes.getInterfaceName() + ", value: " + value);
+		OutputCommand command;
+		if (attributes.getInterfaceName().startsWith("M")) {
+			int motorNum = Integer.parseInt(attributes.getInterfaceName().substring(1));
+			command = new OutputCommand(motorNum, Integer.parseInt(value));
+		} else if (attributes.getInterfaceName().equals("S1")) {
+			int state = (Integer.parseInt(value) == 1) ? 1 : 0;
+			command = new OutputCommand(OutputCommand.SAFETY, state);
+		} else {
+			throw new NotFoundException("Fischertech interface", attributes.getInterfaceName());
+		}
+		session.submit(command);
+		return command;
+	}
+	
+	private ControllerSession requireSession(Addressable addressable) {
+		ControllerSession session = getSession(addressable);
+		if (session == null) {
+			initialize();
+			session = getSession(addressable);
+			if (session == null)
+				throw new NotFoundException("Fischertechnik device", addressable.getName());
+		}
+		return session;
+	}
+	
+	// Session for the controller on the addressable's port, a lone controller also serves
+	// devices provisioned under the single controller address
+	private ControllerSession getSession(Addressable addressable) {
+		if (addressable == null || addressable.getPath() == null)
+			return null;
+		ControllerSession session = sessions.get(addressable.getPath());
+		if (session == null && addressable.getPath().equals(LEGACY_ADDRESS) && sessions.size() == 1)
+			session = sessions.values().iterator().next();
+		if (session != null && !session.isConnected())
+			return null;
+		return session;
+	}
+	
+	public Map<String, Object> getCycleStatistics() {
+		Map<String, Object> statistics = new HashMap<String, Object>();
+		for (ControllerSession session: sessions.values())
+			statistics.put(session.getKey(), session.getCycleStatistics());
+		return statistics;
+	}
+	
+	void receive(ControllerSession session, String interfaceName, String value) {
+		logger.debug("Event detected on " + session.getKey() + " for: " + interfaceName + " value: " + value);
+		FischertechDevice device = session.getDevice();
+		if (device == null)
+			return;
+		InterfaceBinding binding = profiles.getInterface(device.getName(), interfaceName);
+		if (binding == null || binding.getOperation() == null)
+			return;
 		try {
-			FischertechObject object = profiles.getObjects().get(device.getName()).values().stream().filter(o -> o.getAttributes().getInterfaceName().equals(interfaceName)).findFirst().orElse(null);
-			if (object != null) {
-				ResourceOperation operation = profiles.getCommands().get(device.getName()).get(object.getName().toLowerCase()).get("get").get(0);
-				objectCache.put(device, operation, value);
-				handler.sendTransaction(device.getName(), objectCache.getResponses(device, operation));
-				
-			}
+			ResourceOperation operation = binding.getOperation();
+			objectCache.put(device, operation, value);
+			handler.sendTransaction(device.getName(), objectCache.getResponses(device, operation));
 		} catch (Exception e) {
 			return;
 		}
 	}
 	
+	// Called by a session once its port is closed
+	void sessionClosed(ControllerSession session) {
+		sessions.remove(session.getKey(), session);
+		FischertechDevice device = session.getDevice();
+		session.setDevice(null);
+		if (device != null)
+			devices.remove(device.getId());
+	}
+	
 	public void disconnectDevice(Addressable address) {
-		cleanup();
+		ControllerSession session = getSession(address);
+		if (session != null)
+			session.close();
 	}
 	
 	@PreDestroy
 	public void cleanup() {
-		if (device != null)
-			devices.remove(device.getId());
-		client.closePort();
-		connected = false;
-		device = null;
+		for (ControllerSession session: new ArrayList<ControllerSession>(sessions.values()))
+			session.close();
 	}
 	
 	public void initialize() {
 		try {
-			synchronized(initializer) {
-				if (connected) 
-					return;
+			openSessions();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	// Open a session on every controller port that does not have one yet, returns the new sessions
+	private List<ControllerSession> openSessions() {
+		List<ControllerSession> opened = new ArrayList<ControllerSession>();
+		synchronized(initializer) {
+			if (transportType.equalsIgnoreCase("sim")) {
+				for (int i = 1; i <= simControllers; i++) {
+					String key = "sim" + i;
+					if (!sessions.containsKey(key))
+						openSession(key, new SimulatedTransport("Simulated ROBO TX Controller " + i, simLatency, simDropRate, simCorruptRate), opened);
+				}
+			} else {
 				SerialPort ports[] = SerialPort.getCommPorts();
 				String address = "fischertechnik";
 				String address2 = "ROBO TX Controller";
-				//String address = device.getAddressable().getPath();
 				for (int i = 0; i < ports.length; i++) {
 					logger.debug(ports[i].getDescriptivePortName());
-					if(ports[i].getDescriptivePortName().contains(address) ||
-							ports[i].getDescriptivePortName().contains(address2)) {
-						client = ports[i];
-						break;
-					}
-				}
-				
-				if (client == null) {
-					logger.info("No devices found for connection!");
-					return;
+					if (!ports[i].getDescriptivePortName().contains(address) &&
+							!ports[i].getDescriptivePortName().contains(address2))
+						continue;
+					String key = ports[i].getSystemPortName();
+					if (!sessions.containsKey(key))
+						openSession(key, createTransport(ports[i]), opened);
 				}
-				
-				client.setComPortParameters(serialBaudRate, serialDataBits, serialStopBits, serialParity);
-				client.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 100, 100);
-				client.openPort();
-				logger.info("Port is " + (client.isOpen() ? "open" : "closed") + " for: " + client.getDescriptivePortName());
-				
-				ta_output = new TA_OUTPUT();
-				ta_input = new TA_INPUT();
-				
-				connected = true;
-								
-				final List<Integer> order = configure();
-				
-				if (order.size() == 0) {
-					logger.error("Error initializing device " + client.getDescriptivePortName());
-					disconnectDevice(null);
-					return;
-				}
-				
-				if (device != null) {
-					if (device.getOperatingState().equals(OperatingState.DISABLED))
-						devices.setDeviceByIdOpState(device.getId(), OperatingState.ENABLED);
-					handler.initializeDevice(device);
-				}
-				
-				logger.debug("Initialized the device");
-				
-				new Thread(new Runnable() {
-					public void run() {
-						connection(order);
-					}
-				}).start();
 			}
 			
-		} catch (Exception e) {
-			e.printStackTrace();
-			connected = false;
+			if (sessions.isEmpty())
+				logger.info("No devices found for connection!");
+		}
+		
+		// re-run the init command for devices already bound to a port that reconnected
+		for (ControllerSession session: opened) {
+			FischertechDevice device = findDevice(session.getKey());
+			if (device != null) {
+				session.setDevice(device);
+				if (device.getOperatingState().equals(OperatingState.DISABLED))
+					devices.setDeviceByIdOpState(device.getId(), OperatingState.ENABLED);
+				handler.initializeDevice(device);
+			}
 		}
+		return opened;
 	}
 	
-	private List<Integer> configure() {
-		FishX1Packet packet = new FishX1Packet(5);
-		List<Integer> order = writeToDevice(packet);
-		return order;
+	private void openSession(String key, FishX1Transport transport, List<ControllerSession> opened) {
+		ControllerSession session = new ControllerSession(key, transport, this);
+		if (!session.open())
+			return;
+		sessions.put(key, session);
+		opened.add(session);
+		logger.debug("Initialized the device on " + key);
 	}
-
-	protected void connection(List<Integer> order) {
-		FishX1Packet packet = new FishX1Packet(2, order.get(0), order.get(1));
-		ta_output = packet.getOutput();
-		while (connected) {
-			packet.update(order.get(0), order.get(1));
-			try {
-				order = writeToDevice(packet);
-			} catch (Exception e) {
-				disconnectDevice(null);
-			}
-			synchronized(ta_output) {
-				if (safety) {
-					if (ta_input.getUni(7) > 0) {
-						if (ta_output.getDuty(1) < 0)
-							ta_output.setDuty(1, 0);//8);
-					}
-					if (ta_input.getUni(8) > 0) {
-						if (ta_output.getDuty(1) > 0)
-							ta_output.setDuty(1, 0);//-8);
-					}
-					if (ta_input.getUni(5) == 0) {
-						if (ta_output.getDuty(2) < 0)
-							ta_output.setDuty(2, 0);//127);
-					}	
-					if (ta_input.getUni(6) == 0) {
-						if (ta_output.getDuty(2) > 0)
-							ta_output.setDuty(2, 0);//-127);
-					}
-				}
-				packet.setOutput(ta_output);
-			}
-		}
+	
+	private FischertechDevice findDevice(String key) {
+		FischertechDevice device = devices.getFischertechDeviceByAddress(key);
+		if (device == null && sessions.size() == 1)
+			device = devices.getFischertechDeviceByAddress(LEGACY_ADDRESS);
+		return device;
 	}
-
-	private List<Integer> writeToDevice(FishX1Packet packet) {
-		List<Integer> tid = new ArrayList<Integer>();
-		
-		byte[] buffer = new byte[200];
-		
-		Integer readbytes = 0;
-		byte[] frame = packet.getFrame();
-		client.writeBytes(frame, frame.length/2);
-		readbytes = client.readBytes(buffer, buffer.length);
-		String output = "";
-		for (byte b: buffer) 
-			output += String.format("%02X", b);
-		
-		if (readbytes <= 0 || output.length() < readbytes*2) {
-			logger.error("Could not read from device " + client.getDescriptivePortName());
-			disconnectDevice(null);
-			return tid;
-		}
-		
-		output = output.substring(0, readbytes*2);
-			
-		tid.add(Integer.parseInt(output.substring(24,26), 16) + Integer.parseInt(output.substring(26,28), 16) * 256 + 1);
-		tid.add(Integer.parseInt(output.substring(28,30), 16) + Integer.parseInt(output.substring(30,32), 16) * 256);
-		
-		if (output.substring(16*2,16*2+2).equals("66")) {
-			String target = output.substring(7*4*2, output.length()-6);
-			synchronized(ta_input) {
-				TA_INPUT old = ta_input;
-				ta_input = new TA_INPUT(target);
-				for (int i = 1; i <= ta_input.uni.size(); i++)
-					if (old.getUni(i) != ta_input.getUni(i))
-						receive("I" + i, String.valueOf(ta_input.getUni(i)));
-				if (String.format("%04X", ta_input.uni.get(0)).equals("983A")) {
-					tid = configure(); // attempt to recover connection
-					if (tid.size() == 0)
-						disconnectDevice(null);
-				}
-			}
+	
+	private FishX1Transport createTransport(SerialPort port) {
+		if (transportType.equalsIgnoreCase("event"))
+			return new EventSerialTransport(port);
+		return new SerialTransport(port);
+	}
+	
+	InputFilter newInputFilter() {
+		String[] debounce = splitPerInput(inputDebounce);
+		String[] edge = splitPerInput(inputEdge);
+		String[] interval = splitPerInput(inputInterval);
+		long[] debounceTimes = new long[TA_INPUT.MASK_BITS];
+		long[] intervals = new long[TA_INPUT.MASK_BITS];
+		int[] edges = new int[TA_INPUT.MASK_BITS];
+		for (int i = 0; i < TA_INPUT.MASK_BITS; i++) {
+			debounceTimes[i] = Long.parseLong(debounce[i]);
+			intervals[i] = Long.parseLong(interval[i]);
+			if (edge[i].equalsIgnoreCase("rising"))
+				edges[i] = InputFilter.RISING;
+			else if (edge[i].equalsIgnoreCase("falling"))
+				edges[i] = InputFilter.FALLING;
+			else
+				edges[i] = InputFilter.BOTH;
 		}
-		
-		return tid;
+		return new InputFilter(debounceTimes, edges, intervals);
+	}
+	
+	// One value per input, a shorter list repeats its last value
+	private String[] splitPerInput(String values) {
+		String[] list = values.split(",");
+		String[] result = new String[TA_INPUT.MASK_BITS];
+		for (int i = 0; i < result.length; i++)
+			result[i] = list[Math.min(i, list.length - 1)].trim();
+		return result;
+	}
+	
+	int getPipelineDepth() {
+		return pipelineDepth;
+	}
+	
+	long getReplyTimeout() {
+		return replyTimeout;
+	}
+	
+	long getCyclePeriod() {
+		return cyclePeriod;
+	}
+	
+	long getIdlePeriod() {
+		return idlePeriod;
+	}
+	
+	long getIdleAfter() {
+		return idleAfter;
+	}
+	
+	int getCommandQueueSize() {
+		return commandQueueSize;
+	}
+	
+	long getCommandTimeout() {
+		return commandTimeout;
+	}
+	
+	OperationExecutor getExecutor() {
+		return executor;
 	}
 
 }
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.fishX1.TA_INPUT;
+
+// Change detection on the input bitmask (see TA_INPUT.getMask), each input has its own debounce
+// time, edge selection and minimum interval between reported events. A change held back by the
+// interval is reported with the state at the end of it. Only used by the I/O thread.
+public class InputFilter {
+
+	public static final int RISING = 1;
+	public static final int FALLING = 2;
+	public static final int BOTH = RISING | FALLING;
+	
+	private final long[] debounce = new long[TA_INPUT.MASK_BITS];
+	private final long[] interval = new long[TA_INPUT.MASK_BITS];
+	private final int[] edges = new int[TA_INPUT.MASK_BITS];
+	
+	// last raw sample, the debounced state, the state last reported or dropped by the edge
+	// selection, and when each input last changed or reported
+	private int raw = 0;
+	private int stable = 0;
+	private int published = 0;
+	private final long[] since = new long[TA_INPUT.MASK_BITS];
+	private final long[] reported = new long[TA_INPUT.MASK_BITS];
+	
+	private volatile long suppressed = 0;
+	
+	// debounce and interval in milliseconds, indexed by mask bit
+	public InputFilter(long[] debounce, int[] edges, long[] interval) {
+		for (int i = 0; i < TA_INPUT.MASK_BITS; i++) {
+			this.debounce[i] = TimeUnit.MILLISECONDS.toNanos(debounce[i]);
+			this.interval[i] = TimeUnit.MILLISECONDS.toNanos(interval[i]);
+			this.edges[i] = edges[i];
+			this.reported[i] = Long.MIN_VALUE / 2;
+		}
+	}
+	
+	// Feed the latest sample, returns the mask of inputs with an edge to report, read the new
+	// values from getState()
+	public int update(int mask, long now) {
+		int changed = mask ^ raw;
+		if (changed == 0 && mask == stable && stable == published)
+			return 0;
+		// a change still waiting out its debounce time that reverts is a rejected pulse
+		suppressed += Integer.bitCount(changed & (raw ^ stable));
+		raw = mask;
+		for (int bits = changed; bits != 0; bits &= bits - 1)
+			since[Integer.numberOfTrailingZeros(bits)] = now;
+			
+		int held = stable ^ published;
+		for (int bits = raw ^ stable; bits != 0; bits &= bits - 1) {
+			int i = Integer.numberOfTrailingZeros(bits);
+			if (now - since[i] < debounce[i])
+				continue;
+			stable ^= 1 << i;
+			// reverting a change held back by the interval discards it along with this edge
+			if ((held & (1 << i)) != 0)
+				suppressed += 2;
+			else if ((edges[i] & edge(i)) == 0)
+				suppressed++;
+		}
+		
+		int events = 0;
+		for (int bits = stable ^ published; bits != 0; bits &= bits - 1) {
+			int i = Integer.numberOfTrailingZeros(bits);
+			int bit = 1 << i;
+			// unwanted edges are dropped, the state they lead to becomes the reported one
+			if ((edges[i] & edge(i)) == 0) {
+				published ^= bit;
+				continue;
+			}
+			// still inside the interval, reported once it has passed if the input has not changed back
+			if (now - reported[i] < interval[i])
+				continue;
+			reported[i] = now;
+			published ^= bit;
+			events |= bit;
+		}
+		return events;
+	}
+	
+	private int edge(int i) {
+		return ((stable >> i) & 1) != 0 ? RISING : FALLING;
+	}
+	
+	public int getState() {
+		return stable;
+	}
+	
+	// true while an input change is still waiting out its debounce time or minimum interval
+	public boolean isSettling() {
+		return raw != stable || stable != published;
+	}
+	
+	// edges never reported: pulses shorter than the debounce time, edges dropped by the edge
+	// selection and changes that reverted while held back by the minimum interval
+	public long getSuppressed() {
+		return suppressed;
+	}
+	
+}
@@ -22,6 +22,7 @@ package org.edgexfoundry.fischertech;
 import java.math.BigInteger;
 
 import org.edgexfoundry.data.ObjectStore;
+import org.edgexfoundry.domain.TransformPlan;
 import org.edgexfoundry.domain.meta.PropertyValue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -32,6 +33,22 @@ public class ObjectTransform {
 	@Autowired
 	ObjectStore objectCache;
 	
+	// Compiled plan first, the PropertyValue implementations below cover what it cannot
+	public String maskedValue(TransformPlan plan, String val, String result) {
+		String masked = plan.maskedValue(val, result);
+		return masked != null ? masked : maskedValue(plan.getValue(), val, result);
+	}
+	
+	public String transform(TransformPlan plan, String result) {
+		String transformed = plan.transform(result, objectCache.getTransformData());
+		return transformed != null ? transformed : transform(plan.getValue(), result);
+	}
+	
+	public String format(TransformPlan plan, String arg) {
+		String formatted = plan.format(arg);
+		return formatted != null ? formatted : format(plan.getValue(), arg);
+	}
+	
 	// Read current value, then mask and or with the desired set
 	public String maskedValue(PropertyValue value, String val, String result) {
 		
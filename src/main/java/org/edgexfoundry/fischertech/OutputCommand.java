@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A motor or safety set request handed from a REST thread to the I/O thread
+public class OutputCommand {
+	
+	public static final int SAFETY = 0;
+	
+	// a queued command is either claimed by the I/O thread or cancelled by its caller, never both
+	private static final int QUEUED = 0;
+	private static final int CLAIMED = 1;
+	private static final int CANCELLED = 2;
+	
+	// motor number 1-4, or SAFETY
+	private final int target;
+	private final int value;
+	
+	// completed with the TID of the frame the command went out on
+	private final CompletableFuture<Integer> frame = new CompletableFuture<Integer>();
+	
+	// value written for the target on that frame, a later command in the same cycle or the
+	// safety interlocks may have replaced the requested one
+	private volatile int applied;
+	private volatile int tid;
+	
+	// the last command for its target in the frame, the one whose value went out
+	private volatile boolean leading = false;
+	
+	private final AtomicInteger state = new AtomicInteger(QUEUED);
+	
+	public OutputCommand(int target, int value) {
+		this.target = target;
+		this.value = value;
+	}
+	
+	public int getTarget() {
+		return target;
+	}
+	
+	public int getValue() {
+		return value;
+	}
+	
+	public boolean isSafety() {
+		return target == SAFETY;
+	}
+	
+	public void acknowledge(int tid, int appliedValue) {
+		applied = appliedValue;
+		this.tid = tid;
+		frame.complete(tid);
+	}
+	
+	public int getAppliedValue() {
+		return applied;
+	}
+	
+	// TID of the frame the command went out on, valid once acknowledged
+	public int getFrame() {
+		return tid;
+	}
+	
+	void lead() {
+		leading = true;
+	}
+	
+	// false when a later command for the same target replaced this one within the frame
+	public boolean isLeading() {
+		return leading;
+	}
+
+	
+	public void fail(Throwable cause) {
+		frame.completeExceptionally(cause);
+	}
+	
+	// Taken by the I/O thread for the next frame, false if the caller gave up on it already
+	public boolean claim() {
+		return state.compareAndSet(QUEUED, CLAIMED) && !frame.isDone();
+	}
+	
+	// Withdraw a command that has not been claimed, false if it is already going out
+	public boolean cancel(Throwable cause) {
+		if (!state.compareAndSet(QUEUED, CANCELLED))
+			return false;
+		frame.completeExceptionally(cause);
+		return true;
+	}
+	
+	public int awaitFrame(long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+		return frame.get(timeout, TimeUnit.MILLISECONDS);
+	}
+}
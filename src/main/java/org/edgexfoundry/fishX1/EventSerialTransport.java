@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+
+// Serial transport driven by data-available events, received bytes are queued in a ring buffer
+// and framed by the reading thread as soon as they arrive
+public class EventSerialTransport implements FishX1Transport, SerialPortDataListener {
+	
+	private static final int RING_SIZE = 4096;
+	
+	private final SerialPort port;
+	
+	private final FishX1Framer framer = new FishX1Framer();
+	
+	private final byte[] ring = new byte[RING_SIZE];
+	private int head = 0;
+	private int size = 0;
+	private long overruns = 0;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	
+	// only used on the listener thread
+	private final byte[] received = new byte[RING_SIZE];
+	
+	private volatile boolean closed = false;
+	
+	public EventSerialTransport(SerialPort port) {
+		this.port = port;
+	}
+	
+	@Override
+	public String getName() {
+		return port.getDescriptivePortName();
+	}
+	
+	@Override
+	public boolean open() {
+		port.setComPortParameters(SerialTransport.BAUD_RATE, SerialTransport.DATA_BITS, SerialTransport.STOP_BITS, SerialTransport.PARITY);
+		port.setComPortTimeouts(SerialPort.TIMEOUT_NONBLOCKING, 0, 0);
+		closed = !port.openPort();
+		if (!closed)
+			port.addDataListener(this);
+		return !closed;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		port.removeDataListener();
+		port.closePort();
+		lock.lock();
+		try {
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !closed && port.isOpen();
+	}
+	
+	@Override
+	public int write(byte[] frame, int length) {
+		return port.writeBytes(frame, length);
+	}
+	
+	@Override
+	public int getListeningEvents() {
+		return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+	}
+	
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+		if (event.getEventType() != SerialPort.LISTENING_EVENT_DATA_AVAILABLE)
+			return;
+		int count = port.bytesAvailable();
+		while (count > 0) {
+			int read = port.readBytes(received, Math.min(count, received.length));
+			if (read <= 0)
+				return;
+			enqueue(read);
+			count -= read;
+		}
+	}
+	
+	private void enqueue(int count) {
+		lock.lock();
+		try {
+			for (int i = 0; i < count; i++) {
+				if (size == RING_SIZE) {
+					// reader fell behind, drop the oldest byte and let the framer resynchronize
+					head = (head + 1) % RING_SIZE;
+					size--;
+					overruns++;
+				}
+				ring[(head + size) % RING_SIZE] = received[i];
+				size++;
+			}
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public FishX1Reply read(long timeout) {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lock();
+		try {
+			if (framer.next())
+				return framer.getReply();
+			while (!closed) {
+				while (size > 0) {
+					byte b = ring[head];
+					head = (head + 1) % RING_SIZE;
+					size--;
+					if (framer.accept(b))
+						return framer.getReply();
+				}
+				if (remaining <= 0)
+					return null;
+				remaining = available.awaitNanos(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+		return null;
+	}
+	
+	// bytes dropped because the ring buffer was full
+	public long getOverruns() {
+		lock.lock();
+		try {
+			return overruns;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+// Finds FishX1 frame boundaries (0x02 0x55 ... 0x03) in a serial byte stream, one byte at a time
+public class FishX1Framer {
+	
+	private static final int HEADER_1 = 0x02;
+	private static final int HEADER_2 = 0x55;
+	private static final int FOOTER = 0x03;
+	
+	// header, length field, checksum and footer around the counted data
+	private static final int FRAME_OVERHEAD = 7;
+	
+	private enum State { HEADER_1, HEADER_2, LENGTH_1, LENGTH_2, BODY }
+	
+	private final FishX1Reply reply = new FishX1Reply();
+	private final byte[] frame = reply.getBuffer();
+	
+	private State state = State.HEADER_1;
+	private int position = 0;
+	private int expected = 0;
+	private long dropped = 0;
+	
+	// bytes of a rejected candidate after its header, scanned again ahead of the bytes still to come
+	// since a real frame may start inside it
+	private final byte[] pending = new byte[2 * FishX1Reply.MAX_FRAME_SIZE];
+	private int pendingStart = 0;
+	private int pendingEnd = 0;
+	
+	// Returns true when the byte completes a frame, which stays valid in getReply() until the next call
+	public boolean accept(byte b) {
+		if (pendingStart == pendingEnd) {
+			if (step(b))
+				return true;
+		} else {
+			if (pendingEnd == pending.length) {
+				System.arraycopy(pending, pendingStart, pending, 0, pendingEnd - pendingStart);
+				pendingEnd -= pendingStart;
+				pendingStart = 0;
+			}
+			pending[pendingEnd++] = b;
+		}
+		return next();
+	}
+	
+	// A frame found while rescanning may leave the bytes after it held back. Returns true when they
+	// complete another frame, callers check before waiting for more input.
+	public boolean next() {
+		while (pendingStart < pendingEnd) {
+			if (step(pending[pendingStart++]))
+				return true;
+		}
+		pendingStart = 0;
+		pendingEnd = 0;
+		return false;
+	}
+	
+	private boolean step(byte b) {
+		int value = b & 0xFF;
+		switch (state) {
+		case HEADER_1:
+			if (value == HEADER_1) {
+				frame[0] = b;
+				state = State.HEADER_2;
+			}
+			return false;
+		case HEADER_2:
+			if (value == HEADER_2) {
+				frame[1] = b;
+				state = State.LENGTH_1;
+			} else if (value != HEADER_1) {
+				state = State.HEADER_1;
+			}
+			return false;
+		case LENGTH_1:
+			frame[2] = b;
+			state = State.LENGTH_2;
+			return false;
+		case LENGTH_2:
+			frame[3] = b;
+			position = 4;
+			expected = ((frame[2] & 0xFF) << 8 | value) + FRAME_OVERHEAD;
+			if (expected > FishX1Reply.MAX_FRAME_SIZE) {
+				drop();
+				return false;
+			}
+			state = State.BODY;
+			return false;
+		case BODY:
+			frame[position++] = b;
+			if (position < expected)
+				return false;
+			if (value != FOOTER) {
+				drop();
+				return false;
+			}
+			reply.setLength(expected);
+			restart();
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	public FishX1Reply getReply() {
+		return reply;
+	}
+	
+	public void reset() {
+		restart();
+		pendingStart = 0;
+		pendingEnd = 0;
+	}
+	
+	// number of malformed frames discarded while resynchronizing
+	public long getDropped() {
+		return dropped;
+	}
+	
+	private void restart() {
+		state = State.HEADER_1;
+		position = 0;
+	}
+	
+	// Reject the candidate and rescan from the byte after its first header byte
+	private void drop() {
+		dropped++;
+		int count = position - 1;
+		int unread = pendingEnd - pendingStart;
+		if (count + unread > pending.length)
+			count = pending.length - unread;
+		System.arraycopy(pending, pendingStart, pending, count, unread);
+		System.arraycopy(frame, position - count, pending, 0, count);
+		pendingStart = 0;
+		pendingEnd = count + unread;
+		restart();
+	}
+}
@@ -19,25 +19,35 @@
  *******************************************************************************/
 package org.edgexfoundry.fishX1;
 
+import java.nio.ByteBuffer;
+
 import org.springframework.stereotype.Component;
 
 @Component
 public class FishX1Packet {
 	
-	private String header = "0255";
-	private String from = littleEndian(2,4);
-	private String to = littleEndian(1,4);
-	private String TID;
-	private String SID;
-	private String command = littleEndian(1,4);
+	public static final int MAX_FRAME_SIZE = 128;
+	
+	private static final byte HEADER_1 = 0x02;
+	private static final byte HEADER_2 = 0x55;
+	private static final byte FOOTER = 0x03;
+	
+	private static final int FROM = 2;
+	private static final int TO = 1;
+	
+	private int TID;
+	private int SID;
+	private int command = 1;
 	private int numStructures = 0;
-	private String TAID = "";
-	private String footer = "03";
 	
-	private String messagePayload = "";
 	private TA_OUTPUT output;
 	private TA_CONFIG config;
 	
+	// frame is encoded in place on every call to getFrame, so the I/O loop reuses one buffer
+	private final byte[] frame = new byte[MAX_FRAME_SIZE];
+	private final ByteBuffer buffer = ByteBuffer.wrap(frame);
+	private int frameLength = 0;
+	
 	public FishX1Packet() {
 		this(2);
 	}
@@ -54,9 +64,9 @@ public class FishX1Packet {
 		if (sid > 65535) {
 			sid = 0;
 		}
-		TID = littleEndian(tid, 2);
-		SID = littleEndian(sid, 2);
-		command = littleEndian(type,4);
+		TID = tid;
+		SID = sid;
+		command = type;
 		if (type == 2) {
 			output = new TA_OUTPUT();
 			//output.setDuty(1, 0); // 0: press down, 1: press up, 2: belt right, 3: belt left, 5: light
@@ -67,28 +77,29 @@ public class FishX1Packet {
 			config = new TA_CONFIG();
 			setConfig(config);
 		} else if (type == 7 || type == 6) {
-			addStructure("");
+			numStructures = 1;
 		}
 	}
 	
 	public FishX1Packet(int tid, int sid) {
-		TID = littleEndian(tid, 2);
-		SID = littleEndian(sid, 2);
+		TID = tid;
+		SID = sid;
 	}
 	
 	public void update(int tid, int sid) {
-		TID = littleEndian(tid, 2);
-		SID = littleEndian(sid, 2);
+		TID = tid;
+		SID = sid;
 	}
 	
-	private Integer getDataLength() {
-		return 20 + TAID.length() / 2 + messagePayload.length() / 2;
-	}
-	
-	public void addStructure(String structure) {
-		TAID = littleEndian(0,4);
-		numStructures = 1;
-		messagePayload = structure;
+	private int getDataLength() {
+		int length = 20;
+		if (numStructures > 0)
+			length += 4;
+		if (output != null)
+			length += TA_OUTPUT.SIZE;
+		else if (config != null)
+			length += TA_CONFIG.SIZE;
+		return length;
 	}
 	
 	public TA_OUTPUT getOutput() {
@@ -97,60 +108,65 @@ public class FishX1Packet {
 	
 	public void setOutput(TA_OUTPUT output) {
 		this.output = output;
-		addStructure(output.toString());
+		this.config = null;
+		numStructures = 1;
 	}
 	
 	public void setConfig(TA_CONFIG config) {
 		this.config = config;
-		addStructure(config.toString());
+		this.output = null;
+		numStructures = 1;
 	}
 	
-	private String getNumStructures() {
-		return littleEndian(numStructures,4);
+	public int getTID() {
+		return TID;
 	}
 	
-	private String getLength() {
-		return String.format("%04X", getDataLength());
+	public int getSID() {
+		return SID;
 	}
 	
-	private String getCRC() {
-		String payload = getPayload();
+	// Encodes the frame into the packet's reusable buffer and returns it, only the first
+	// getFrameLength() bytes are valid
+	public byte[] getFrame() {
+		buffer.clear();
+		buffer.put(HEADER_1);
+		buffer.put(HEADER_2);
+		buffer.putShort((short) getDataLength());
+		buffer.putInt(Integer.reverseBytes(FROM));
+		buffer.putInt(Integer.reverseBytes(TO));
+		buffer.putShort(Short.reverseBytes((short) TID));
+		buffer.putShort(Short.reverseBytes((short) SID));
+		buffer.putInt(Integer.reverseBytes(command));
+		buffer.putInt(Integer.reverseBytes(numStructures));
+		if (numStructures > 0)
+			buffer.putInt(0);
+		if (output != null)
+			output.write(buffer);
+		else if (config != null)
+			config.write(buffer);
+		
+		// checksum is the two's complement of the byte sum from the length field to the end of the payload
 		int crc = 0;
-		for (int i = 0; i < payload.length()/2; i++) {
-			Integer current = Integer.parseInt(payload.substring(i*2, i*2+2), 16);
-			crc += current;
-		}
-		crc = 65535 - crc + 1;
-        return String.format("%04X", crc);
+		for (int i = 2; i < buffer.position(); i++)
+			crc += frame[i] & 0xFF;
+		buffer.putShort((short) (65536 - crc));
+		buffer.put(FOOTER);
+		
+		frameLength = buffer.position();
+		return frame;
 	}
 	
-	private String getPayload() {
-		return getLength() + from + to + TID + SID + command + getNumStructures() + TAID + messagePayload;
+	public int getFrameLength() {
+		return frameLength;
 	}
 	
 	@Override
 	public String toString() {
-		return header + getPayload() + getCRC() + footer;
-	}
-	
-	public byte[] getFrame() {
-		return hexToBytes(this.toString());
-	}
-	
-	public byte[] hexToBytes(String s) {
-	    byte[] byteArray = new byte[s.length() / 2];
-	    for (int i = 0; i < byteArray.length; i += 1) {
-	    	byteArray[i] = (byte) (Integer.parseInt(s.substring(i*2, (i+1)*2), 16));
-	    }
-	    return byteArray;
-	}
-	
-	private String littleEndian(int value, int length) {
-		String out = "";
-		for (int i = 0; i < length; i++) {
-			out += String.format("%02X", value % 256);
-			value = value >> 8;
-		}
-		return out;
+		getFrame();
+		StringBuilder out = new StringBuilder(frameLength * 2);
+		for (int i = 0; i < frameLength; i++)
+			out.append(String.format("%02X", frame[i]));
+		return out.toString();
 	}
 }
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Reusable receive buffer for FishX1 replies, fields are read in place from the raw bytes
+public class FishX1Reply {
+	
+	public static final int MAX_FRAME_SIZE = 200;
+	
+	public static final int TID_OFFSET = 12;
+	public static final int SID_OFFSET = 14;
+	public static final int COMMAND_OFFSET = 16;
+	public static final int TA_OFFSET = 28;
+	
+	// reply command for an I/O exchange (type 2 request)
+	public static final int INPUT_REPLY = 0x66;
+	
+	private final byte[] frame = new byte[MAX_FRAME_SIZE];
+	private final ByteBuffer buffer = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+	private int length = 0;
+	
+	public byte[] getBuffer() {
+		return frame;
+	}
+	
+	public int getLength() {
+		return length;
+	}
+	
+	// limit the view to the payload, the frame ends with a two byte checksum and the footer
+	public void setLength(int length) {
+		this.length = length;
+		buffer.limit(Math.max(0, Math.min(length, MAX_FRAME_SIZE) - 3));
+	}
+	
+	public boolean isValid() {
+		return buffer.limit() > COMMAND_OFFSET;
+	}
+	
+	public int getTID() {
+		return buffer.getShort(TID_OFFSET) & 0xFFFF;
+	}
+	
+	public int getSID() {
+		return buffer.getShort(SID_OFFSET) & 0xFFFF;
+	}
+	
+	public int getCommand() {
+		return frame[COMMAND_OFFSET] & 0xFF;
+	}
+	
+	public boolean hasInput() {
+		return getCommand() == INPUT_REPLY && buffer.limit() >= TA_OFFSET + TA_INPUT.SIZE;
+	}
+	
+	public void readInput(TA_INPUT input) {
+		input.read(buffer, TA_OFFSET);
+	}
+}
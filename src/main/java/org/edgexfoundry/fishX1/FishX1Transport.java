@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+// Byte transport to a single ROBO TX controller
+public interface FishX1Transport {
+	
+	String getName();
+	
+	boolean open();
+	
+	void close();
+	
+	boolean isOpen();
+	
+	int write(byte[] frame, int length);
+	
+	// Next complete reply frame, or null if none arrived within the timeout in milliseconds or the
+	// transport closed. The reply is only valid until the next call.
+	FishX1Reply read(long timeout);
+	
+}
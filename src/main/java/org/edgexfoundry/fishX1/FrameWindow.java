@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Frames in flight on the serial line in pipelined mode. Frames go out with consecutive TIDs and
+// replies come back in order, so a reply for a TID also completes any earlier frame whose reply was lost
+public class FrameWindow {
+	
+	private final int depth;
+	private final Semaphore permits;
+	
+	private int lastSent = 0;
+	private int lastCompleted = 0;
+	
+	public FrameWindow(int depth) {
+		this.depth = depth;
+		this.permits = new Semaphore(depth);
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	// Wait for room in the window, false if no reply freed a slot in time
+	public boolean acquire(long timeout) throws InterruptedException {
+		return permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized void sent(int tid) {
+		lastSent = tid;
+	}
+	
+	// Match a reply to the frames in flight, false for stale or unknown TIDs
+	public synchronized boolean complete(int tid) {
+		int outstanding = (lastSent - lastCompleted) & 0xFFFF;
+		int distance = (tid - lastCompleted) & 0xFFFF;
+		if (distance == 0 || distance > outstanding)
+			return false;
+		lastCompleted = tid;
+		permits.release(distance);
+		return true;
+	}
+	
+	public synchronized int inFlight() {
+		return (lastSent - lastCompleted) & 0xFFFF;
+	}
+	
+	// Give up on everything in flight, e.g. after a reply timeout
+	public synchronized void reset(int tid) {
+		lastSent = tid;
+		lastCompleted = tid;
+		permits.drainPermits();
+		permits.release(depth);
+	}
+}
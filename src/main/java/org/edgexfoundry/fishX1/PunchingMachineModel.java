@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+// Motors and sensors of the punching machine profile: M1 press (+ down), M2 belt (+ right),
+// M3 belt lights, I5/I6 belt detectors (1 clear), I7/I8 press upper and lower limits
+public class PunchingMachineModel {
+
+	// full scale motor duty on the ROBO TX
+	private static final int MAX_DUTY = 512;
+	
+	// travel time in milliseconds at full duty
+	private static final double PRESS_TRAVEL = 1000;
+	private static final double BELT_TRAVEL = 3000;
+	
+	private final int[] duty = new int[4];
+	
+	// press at 0 is the upper limit, workpiece at 0 is in front of the left detector
+	private double press = 0;
+	private double workpiece = BELT_TRAVEL / 2;
+	
+	private long lastUpdate = System.nanoTime();
+	
+	// Advance the model to now with the duties in effect so far, then apply the new ones
+	public synchronized void setDuty(int motorNum, int power) {
+		advance();
+		duty[motorNum - 1] = Math.max(-MAX_DUTY, Math.min(MAX_DUTY, power));
+	}
+	
+	public synchronized int getDuty(int motorNum) {
+		return duty[motorNum - 1];
+	}
+	
+	// Current universal input values, I1 to I8
+	public synchronized void readInputs(int[] uni) {
+		advance();
+		boolean lights = duty[2] != 0;
+		for (int i = 0; i < uni.length; i++)
+			uni[i] = 0;
+		uni[4] = (lights && workpiece > 0) ? 1 : 0;
+		uni[5] = (lights && workpiece < BELT_TRAVEL) ? 1 : 0;
+		uni[6] = (press <= 0) ? 1 : 0;
+		uni[7] = (press >= PRESS_TRAVEL) ? 1 : 0;
+	}
+	
+	private void advance() {
+		long now = System.nanoTime();
+		double elapsed = (now - lastUpdate) / 1000000.0;
+		lastUpdate = now;
+		press = clamp(press + elapsed * duty[0] / MAX_DUTY, PRESS_TRAVEL);
+		workpiece = clamp(workpiece + elapsed * duty[1] / MAX_DUTY, BELT_TRAVEL);
+	}
+	
+	private static double clamp(double value, double max) {
+		return Math.max(0, Math.min(max, value));
+	}
+	
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+// Serial transport polling the port with semi-blocking reads
+public class SerialTransport implements FishX1Transport {
+	
+	public static final int BAUD_RATE = 38400;
+	public static final int DATA_BITS = 8;
+	public static final int STOP_BITS = 1;
+	public static final int PARITY = 0;
+	
+	// semi-blocking read timeout in milliseconds
+	private static final int READ_TIMEOUT = 100;
+	
+	protected final SerialPort port;
+	
+	private final FishX1Framer framer = new FishX1Framer();
+	
+	// bytes left over from the last read after a frame completed
+	private final byte[] chunk = new byte[FishX1Reply.MAX_FRAME_SIZE];
+	private int chunkPosition = 0;
+	private int chunkLength = 0;
+	
+	private volatile boolean closed = false;
+	
+	public SerialTransport(SerialPort port) {
+		this.port = port;
+	}
+	
+	@Override
+	public String getName() {
+		return port.getDescriptivePortName();
+	}
+	
+	@Override
+	public boolean open() {
+		port.setComPortParameters(BAUD_RATE, DATA_BITS, STOP_BITS, PARITY);
+		port.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, READ_TIMEOUT, READ_TIMEOUT);
+		closed = !port.openPort();
+		return !closed;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		port.closePort();
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !closed && port.isOpen();
+	}
+	
+	@Override
+	public int write(byte[] frame, int length) {
+		return port.writeBytes(frame, length);
+	}
+	
+	@Override
+	public FishX1Reply read(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		if (framer.next())
+			return framer.getReply();
+		while (!closed) {
+			while (chunkPosition < chunkLength) {
+				if (framer.accept(chunk[chunkPosition++]))
+					return framer.getReply();
+			}
+			if (System.currentTimeMillis() >= deadline)
+				return null;
+			chunkPosition = 0;
+			chunkLength = port.readBytes(chunk, chunk.length);
+			if (chunkLength < 0) {
+				chunkLength = 0;
+				closed = true;
+			}
+		}
+		return null;
+	}
+	
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process ROBO TX controller running the punching machine model, answers config (type 5) and
+// I/O (type 2) frames after a fixed latency, optionally dropping or corrupting replies
+public class SimulatedTransport implements FishX1Transport {
+
+	private static final byte HEADER_1 = 0x02;
+	private static final byte HEADER_2 = 0x55;
+	private static final byte FOOTER = 0x03;
+	
+	private static final int FROM = 1;
+	private static final int TO = 2;
+	
+	// replies carry the request command plus this offset
+	private static final int REPLY_OFFSET = 100;
+	
+	private static final int COMMAND_OFFSET = 16;
+	private static final int TA_OFFSET = 28;
+	
+	// duty values follow cnt_reset and master in the encoded TA_OUTPUT
+	private static final int DUTY_OFFSET = TA_OFFSET + 12;
+	
+	// reserved bytes sent after the TA_INPUT fields
+	private static final int INPUT_RESERVED = 20;
+	
+	private static class Pending {
+		final byte[] frame;
+		final long due;
+		
+		Pending(byte[] frame, long due) {
+			this.frame = frame;
+			this.due = due;
+		}
+	}
+	
+	private final String name;
+	private final PunchingMachineModel model = new PunchingMachineModel();
+	
+	private final long latency;
+	private final double dropRate;
+	private final double corruptRate;
+	private final Random random;
+	
+	private final LinkedBlockingQueue<Pending> replies = new LinkedBlockingQueue<Pending>();
+	private final FishX1Framer framer = new FishX1Framer();
+	private final int[] uni = new int[8];
+	
+	private final int session;
+	private volatile boolean closed = true;
+	
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong corrupted = new AtomicLong();
+	
+	// latency in milliseconds, drop and corrupt rates are probabilities per reply
+	public SimulatedTransport(String name, long latency, double dropRate, double corruptRate) {
+		this.name = name;
+		this.latency = latency;
+		this.dropRate = dropRate;
+		this.corruptRate = corruptRate;
+		this.random = new Random(name.hashCode());
+		this.session = 1 + random.nextInt(0xFFFE);
+	}
+	
+	public PunchingMachineModel getModel() {
+		return model;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public boolean open() {
+		replies.clear();
+		framer.reset();
+		closed = false;
+		return true;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		replies.clear();
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !closed;
+	}
+	
+	// Decode the request synchronously so the caller may reuse its buffer, the reply is queued
+	@Override
+	public int write(byte[] frame, int length) {
+		if (closed)
+			return -1;
+		if (length <= COMMAND_OFFSET || frame[0] != HEADER_1 || frame[1] != HEADER_2)
+			return length;
+		ByteBuffer request = ByteBuffer.wrap(frame, 0, length);
+		int tid = Short.reverseBytes(request.getShort(FishX1Reply.TID_OFFSET)) & 0xFFFF;
+		int command = Integer.reverseBytes(request.getInt(COMMAND_OFFSET));
+		
+		boolean io = command == 2 && length >= TA_OFFSET + TA_OUTPUT.SIZE;
+		if (io) {
+			for (int motor = 1; motor <= 4; motor++) {
+				int forward = request.getShort(DUTY_OFFSET + (motor - 1) * 4);
+				int reverse = request.getShort(DUTY_OFFSET + (motor - 1) * 4 + 2);
+				model.setDuty(motor, (forward != 0) ? forward : -reverse);
+			}
+		} else if (command != 5) {
+			return length;
+		}
+		
+		if (random.nextDouble() < dropRate) {
+			dropped.incrementAndGet();
+			return length;
+		}
+		byte[] reply = encodeReply(command + REPLY_OFFSET, tid, io);
+		if (random.nextDouble() < corruptRate) {
+			corrupted.incrementAndGet();
+			reply[reply.length - 1] = 0;
+		}
+		replies.offer(new Pending(reply, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latency)));
+		return length;
+	}
+	
+	private byte[] encodeReply(int command, int tid, boolean input) {
+		int dataLength = 20;
+		if (input)
+			dataLength += 4 + TA_INPUT.SIZE + INPUT_RESERVED;
+		byte[] reply = new byte[dataLength + 7];
+		ByteBuffer buffer = ByteBuffer.wrap(reply);
+		buffer.put(HEADER_1);
+		buffer.put(HEADER_2);
+		buffer.putShort((short) dataLength);
+		buffer.putInt(Integer.reverseBytes(FROM));
+		buffer.putInt(Integer.reverseBytes(TO));
+		buffer.putShort(Short.reverseBytes((short) tid));
+		buffer.putShort(Short.reverseBytes((short) session));
+		buffer.putInt(Integer.reverseBytes(command));
+		buffer.putInt(Integer.reverseBytes(input ? 1 : 0));
+		if (input) {
+			buffer.putInt(0);
+			model.readInputs(uni);
+			for (int i = 0; i < uni.length; i++)
+				buffer.putShort(Short.reverseBytes((short) uni[i]));
+			// counters, display buttons and reserved bytes stay zero
+			buffer.position(buffer.position() + TA_INPUT.SIZE - uni.length * 2 + INPUT_RESERVED);
+		}
+		int crc = 0;
+		for (int i = 2; i < buffer.position(); i++)
+			crc += reply[i] & 0xFF;
+		buffer.putShort((short) (65536 - crc));
+		buffer.put(FOOTER);
+		return reply;
+	}
+	
+	@Override
+	public FishX1Reply read(long timeout) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		if (framer.next())
+			return framer.getReply();
+		try {
+			while (!closed) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					return null;
+				Pending pending = replies.poll(remaining, TimeUnit.NANOSECONDS);
+				if (pending == null)
+					return null;
+				long wait = pending.due - System.nanoTime();
+				while (wait > 0 && !closed) {
+					LockSupport.parkNanos(wait);
+					wait = pending.due - System.nanoTime();
+				}
+				for (int i = 0; i < pending.frame.length; i++)
+					if (framer.accept(pending.frame[i]))
+						return framer.getReply();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+	
+	// replies withheld and replies sent with a broken footer
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	public long getCorrupted() {
+		return corrupted.get();
+	}
+	
+}
@@ -19,10 +19,13 @@
  *******************************************************************************/
 package org.edgexfoundry.fishX1;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
 public class TA_CONFIG {
+	public static final int SIZE = 48;
+	
 	public Integer pgm_state_req = 1;
 	public List<Integer> reserved_1 = Arrays.asList(new Integer[3]);
 	public List<Integer> motor = Arrays.asList(new Integer[4]);
@@ -43,6 +46,18 @@ public class TA_CONFIG {
 			reserved.set(i, 0);
 	}
 	
+	public void write(ByteBuffer buffer) {
+		buffer.put((byte) (int) pgm_state_req);
+		for(int i = 0; i < reserved_1.size(); i++)
+			buffer.put((byte) (int) reserved_1.get(i));
+		for(int i = 0; i < uni.size(); i++)
+			buffer.put((byte) 0x81);//uni.get(i)
+		for(int i = 0; i < cnt.size(); i++)
+			buffer.put((byte) 0x01);//cnt.get(i)
+		for(int i = 0; i < reserved.size(); i++)
+			buffer.put((byte) (int) reserved.get(i));
+	}
+	
 	@Override
 	public String toString() {
 		String out = String.format("%02X", pgm_state_req);
@@ -19,57 +19,65 @@
  *******************************************************************************/
 package org.edgexfoundry.fishX1;
 
-import java.util.Arrays;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 public class TA_INPUT {
-	public List<Integer> uni = Arrays.asList(new Integer[8]);
-	public List<Integer> cnt_in = Arrays.asList(new Integer[4]);
-	public List<Integer> counter = Arrays.asList(new Integer[4]);
-	public Integer display_button_left = 0;
-	public Integer display_button_right = 0;
-	public List<Integer> reserved = Arrays.asList(new Integer[20]);
+	public static final int SIZE = 36;
 	
-	public TA_INPUT(String ta_input) {
-		for(int i = 0; i < uni.size(); i++)
-			uni.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-		ta_input = ta_input.substring(uni.size()*4);
-		for(int i = 0; i < cnt_in.size(); i++)
-			cnt_in.set(i, Integer.parseInt(ta_input.substring(i*2,i*2+2), 16));
-		ta_input = ta_input.substring(cnt_in.size()*4);
-		for(int i = 0; i < counter.size(); i++)
-			counter.set(i, Integer.parseInt(ta_input.substring(i*4,i*4+4), 16));
-		ta_input = ta_input.substring(counter.size()*4);
-		display_button_left = Integer.parseInt(ta_input.substring(0,4), 16);
-		display_button_right = Integer.parseInt(ta_input.substring(4,8), 16);
-		ta_input = ta_input.substring(2*4);
-		for(int i = 0; i < reserved.size(); i++)
-			reserved.set(i, Integer.parseInt(ta_input.substring(i,i+2), 16));
-	}
-
+	// universal inputs I1-I8 in bits 0-7, counter inputs C1-C4 in bits 8-11
+	public static final int MASK_BITS = 12;
 	
-	public TA_INPUT() {
-		for(int i = 0; i < uni.size(); i++)
-			uni.set(i, 0);
-		for(int i = 0; i < cnt_in.size(); i++)
-			cnt_in.set(i, 0);
-		for(int i = 0; i < counter.size(); i++)
-			counter.set(i, 0);
-		for(int i = 0; i < reserved.size(); i++)
-			reserved.set(i, 0);
+	public final int[] uni = new int[8];
+	public final int[] cnt_in = new int[4];
+	public final int[] counter = new int[4];
+	public int display_button_left = 0;
+	public int display_button_right = 0;
+	public final int[] reserved = new int[20];
+	
+	// Reads the structure in place from a little endian buffer starting at offset
+	public void read(ByteBuffer buffer, int offset) {
+		int index = offset;
+		for(int i = 0; i < uni.length; i++, index += 2)
+			uni[i] = buffer.getShort(index) & 0xFFFF;
+		for(int i = 0; i < cnt_in.length; i++, index += 2)
+			cnt_in[i] = buffer.getShort(index) & 0xFFFF;
+		for(int i = 0; i < counter.length; i++, index += 2)
+			counter[i] = buffer.getShort(index) & 0xFFFF;
+		display_button_left = buffer.getShort(index) & 0xFFFF;
+		display_button_right = buffer.getShort(index + 2) & 0xFFFF;
+		index += 4;
+		for(int i = 0; i < reserved.length; i++, index++)
+			reserved[i] = (index < buffer.limit()) ? buffer.get(index) & 0xFF : 0;
 	}
 
 	@Override
 	public String toString() {
 		String out = "uni: "; // I5: left, I6: right, I7: top, I8: bottom
-		for(int i = 0; i < uni.size(); i++)
-			out += String.format("%04X ", uni.get(i));
+		for(int i = 0; i < uni.length; i++)
+			out += String.format("%04X ", uni[i]);
 		return out;
 	}
 
+	// Digital state of all inputs in one word, so a cycle's changes are a single xor
+	public int getMask() {
+		int mask = 0;
+		for(int i = 0; i < uni.length; i++)
+			if (uni[i] != 0)
+				mask |= 1 << i;
+		for(int i = 0; i < cnt_in.length; i++)
+			if (cnt_in[i] != 0)
+				mask |= 1 << (uni.length + i);
+		return mask;
+	}
+	
+	// Interface name of a mask bit, I1-I8 then C1-C4
+	public static String getInterfaceName(int bit) {
+		return (bit < 8) ? "I" + (bit + 1) : "C" + (bit - 7);
+	}
+
 	public int getUni(int uniNum) {
 		int uni = uniNum - 1;
-		int value = this.uni.get(uni);
+		int value = this.uni[uni];
 		return (value == 0) ? 0 : 1;
 	}
 }
@@ -19,62 +19,76 @@
  *******************************************************************************/
 package org.edgexfoundry.fishX1;
 
-import java.util.Arrays;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 public class TA_OUTPUT {
-	public List<Integer> cnt_reset = Arrays.asList(new Integer[4]);
-	public List<Integer> master = Arrays.asList(new Integer[4]);
-	public List<Integer> duty = Arrays.asList(new Integer[8]);
-	public List<Integer> distance = Arrays.asList(new Integer[4]);
-	public List<Integer> motor_ex_cmd_id = Arrays.asList(new Integer[4]);
+	public static final int SIZE = 44;
 	
-	public TA_OUTPUT() {
-		for(int i = 0; i < cnt_reset.size(); i++)
-			cnt_reset.set(i, 0);
-		for(int i = 0; i < master.size(); i++)
-			master.set(i, 0);
-		for(int i = 0; i < duty.size(); i++)
-			duty.set(i, 0);
-		for(int i = 0; i < distance.size(); i++)
-			distance.set(i, 0);
-		for(int i = 0; i < motor_ex_cmd_id.size(); i++)
-			motor_ex_cmd_id.set(i, 0);
-	}
+	public final int[] cnt_reset = new int[4];
+	public final int[] master = new int[4];
+	public final int[] duty = new int[8];
+	public final int[] distance = new int[4];
+	public final int[] motor_ex_cmd_id = new int[4];
 	
 	public void setDuty(int motorNum, int power) {
 		int motor = motorNum - 1;
 		// 0: press down, 1: press up, 2: belt right, 3: belt left, 5: light
 		if (power > 0) {
-			duty.set(motor * 2, power);
-			duty.set(motor * 2 + 1, 0);
+			duty[motor * 2] = power;
+			duty[motor * 2 + 1] = 0;
 		} else {
-			duty.set(motor * 2, 0);
-			duty.set(motor * 2 + 1, -1 * power);
+			duty[motor * 2] = 0;
+			duty[motor * 2 + 1] = -1 * power;
 		}
 	}
 	
 	public int getDuty(int motorNum) {
 		int motor = motorNum - 1;
-		int power = duty.get(motor * 2);
+		int power = duty[motor * 2];
 		if (power == 0)
-			power = -1 * duty.get(motor * 2 + 1);
+			power = -1 * duty[motor * 2 + 1];
 		return power;
 	}
 	
+	public void reset() {
+		for(int i = 0; i < duty.length; i++)
+			duty[i] = 0;
+		for(int i = 0; i < cnt_reset.length; i++)
+			cnt_reset[i] = 0;
+		for(int i = 0; i < master.length; i++)
+			master[i] = 0;
+		for(int i = 0; i < distance.length; i++)
+			distance[i] = 0;
+		for(int i = 0; i < motor_ex_cmd_id.length; i++)
+			motor_ex_cmd_id[i] = 0;
+	}
+	
+	public void write(ByteBuffer buffer) {
+		for(int i = 0; i < cnt_reset.length; i++)
+			buffer.putShort((short) cnt_reset[i]);
+		for(int i = 0; i < master.length; i++)
+			buffer.put((byte) master[i]);
+		for(int i = 0; i < duty.length; i++)
+			buffer.putShort((short) duty[i]);
+		for(int i = 0; i < distance.length; i++)
+			buffer.putShort((short) distance[i]);
+		for(int i = 0; i < motor_ex_cmd_id.length; i++)
+			buffer.putShort((short) motor_ex_cmd_id[i]);
+	}
+	
 	@Override
 	public String toString() {
 		String out = "";
-		for(int i = 0; i < cnt_reset.size(); i++)
-			out += String.format("%04X", cnt_reset.get(i));
-		for(int i = 0; i < master.size(); i++)
-			out += String.format("%02X", master.get(i));
-		for(int i = 0; i < duty.size(); i++)
-			out += String.format("%04X", duty.get(i));
-		for(int i = 0; i < distance.size(); i++)
-			out += String.format("%04X", distance.get(i));
-		for(int i = 0; i < motor_ex_cmd_id.size(); i++)
-			out += String.format("%04X", motor_ex_cmd_id.get(i));
+		for(int i = 0; i < cnt_reset.length; i++)
+			out += String.format("%04X", cnt_reset[i]);
+		for(int i = 0; i < master.length; i++)
+			out += String.format("%02X", master[i]);
+		for(int i = 0; i < duty.length; i++)
+			out += String.format("%04X", duty[i]);
+		for(int i = 0; i < distance.length; i++)
+			out += String.format("%04X", distance[i]);
+		for(int i = 0; i < motor_ex_cmd_id.length; i++)
+			out += String.format("%04X", motor_ex_cmd_id[i]);
 		return out;
 	}
 }
@@ -19,18 +19,23 @@
  *******************************************************************************/
 package org.edgexfoundry.handler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.edgexfoundry.Initializer;
 import org.edgexfoundry.data.DeviceStore;
 import org.edgexfoundry.domain.FischertechDevice;
+import org.edgexfoundry.domain.meta.AdminState;
 import org.edgexfoundry.exception.controller.LockedException;
 import org.edgexfoundry.exception.controller.NotFoundException;
 import org.edgexfoundry.support.logging.client.EdgeXLogger;
 import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -46,8 +51,15 @@ public class CommandHandler {
 	
 	@Autowired
 	Initializer init;
-
-	public Map<String,String> getResponse(String deviceId, String cmd, String arguments) {
+	
+	@Autowired
+	OperationExecutor executor;
+	
+	// time in milliseconds an all devices command waits for the slowest device
+	@Value("${service.fanout.timeout:10000}")
+	private long fanoutTimeout;
+	
+	public CompletableFuture<Map<String,String>> getResponse(String deviceId, String cmd, String arguments, Long maxAge) {
 		if (init.isServiceLocked()) {
 			logger.error("GET request cmd: " + cmd + " with device service locked on: " + deviceId);
 			throw new LockedException("GET request cmd: " + cmd + " with device service locked on: " + deviceId);
@@ -58,29 +70,62 @@ public class CommandHandler {
 		}
 		FischertechDevice device = devices.getFischertechDeviceById(deviceId);
 		if (Fischertech.commandExists(device, cmd)) {
-			return Fischertech.executeCommand(device, cmd, arguments);
+			return Fischertech.executeCommandAsync(device, cmd, arguments, maxAge);
 		} else {
 			logger.error("Command: " + cmd + " does not exist for device with id: " + deviceId);
 			throw new NotFoundException("Command", cmd);
 		}
 	}
-
-	public Map<String,String> getResponses(String cmd, String arguments) {
-		Map<String,String> responses = new HashMap<String,String>();
+	
+	// Start the command on every device at once and answer when the last one finishes or the deadline
+	// passes. Devices that failed or did not answer in time report their status under their name.
+	public CompletableFuture<Map<String,String>> getResponses(String cmd, String arguments, Long maxAge) {
 		if (init.isServiceLocked()) {
 			logger.error("GET request cmd: " + cmd + " with device service locked ");
 			throw new LockedException("GET request cmd: " + cmd + " with device locked");
 		}
-		for (String deviceId: devices.getDevices().entrySet().stream().map(d -> d.getValue().getId()).collect(Collectors.toList())) {
-			if (devices.isDeviceLocked(deviceId)) {
-				logger.error("GET request cmd: " + cmd + " with device locked on: " + deviceId);
+		Map<String, CompletableFuture<Map<String,String>>> started = new LinkedHashMap<String, CompletableFuture<Map<String,String>>>();
+		for (FischertechDevice device: new ArrayList<FischertechDevice>(devices.getFischertechDevices().values())) {
+			if (device.getAdminState().equals(AdminState.LOCKED)) {
+				logger.error("GET request cmd: " + cmd + " with device locked on: " + device.getId());
+				continue;
+			}
+			if (!Fischertech.commandExists(device, cmd))
 				continue;
+			CompletableFuture<Map<String,String>> response;
+			try {
+				response = Fischertech.executeCommandAsync(device, cmd, arguments, maxAge);
+			} catch (RuntimeException e) {
+				response = new CompletableFuture<Map<String,String>>();
+				response.completeExceptionally(e);
+			}
+			started.put(device.getName(), response);
+		}
+		CompletableFuture<Void> all = CompletableFuture.allOf(started.values().toArray(new CompletableFuture<?>[started.size()]));
+		return executor.within(all, fanoutTimeout, "Command " + cmd + " on all devices").handle((done, cause) -> merge(started));
+	}
+	
+	private Map<String,String> merge(Map<String, CompletableFuture<Map<String,String>>> started) {
+		Map<String,String> responses = new HashMap<String,String>();
+		for (Map.Entry<String, CompletableFuture<Map<String,String>>> device: started.entrySet()) {
+			CompletableFuture<Map<String,String>> response = device.getValue();
+			if (!response.isDone()) {
+				responses.put(device.getKey(), "timeout");
+				continue;
+			}
+			try {
+				Map<String,String> values = response.join();
+				if (values != null)
+					responses.putAll(values);
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				logger.error("Command failed for device " + device.getKey() + ": " + cause.getMessage());
+				responses.put(device.getKey(), "failed: " + cause.getMessage());
+			} catch (RuntimeException e) {
+				responses.put(device.getKey(), "failed: " + e.getMessage());
 			}
-			FischertechDevice device = devices.getFischertechDeviceById(deviceId);
-			if (Fischertech.commandExists(device, cmd))
-				responses.putAll(Fischertech.executeCommand(device, cmd, arguments));
 		}
 		return responses;
 	}
-
+	
 }
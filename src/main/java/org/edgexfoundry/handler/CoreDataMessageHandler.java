@@ -20,23 +20,15 @@
 package org.edgexfoundry.handler;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 
-import org.edgexfoundry.controller.DeviceClient;
-import org.edgexfoundry.controller.EventClient;
-import org.edgexfoundry.data.DeviceStore;
 import org.edgexfoundry.domain.FischertechObject;
 import org.edgexfoundry.domain.ResponseObject;
-import org.edgexfoundry.domain.core.Event;
 import org.edgexfoundry.domain.core.Reading;
-import org.edgexfoundry.domain.meta.Device;
-import org.edgexfoundry.domain.meta.OperatingState;
 import org.edgexfoundry.support.logging.client.EdgeXLogger;
 import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -45,19 +37,8 @@ public class CoreDataMessageHandler {
 
 	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(CoreDataMessageHandler.class);
 
-	@Value("${service.connect.retries}")
-	private int retries;
-	@Value("${service.connect.wait}")
-	private long delay;
-
-	@Autowired
-	private DeviceClient deviceClient;
-	
-	@Autowired
-	private EventClient eventClient;
-	
 	@Autowired
-	private DeviceStore devices;
+	private CoreDataPublisher publisher;
 	
 	public Reading buildReading(String key, String value, String deviceName) {
 		Reading reading = new Reading();
@@ -67,47 +48,6 @@ public class CoreDataMessageHandler {
 		return reading;
 	}
 
-	private Event buildEvent(String deviceName, List<Reading> readings) {
-		Event event = new Event(deviceName);
-		event.setReadings(readings);
-		return event;
-	}
-
-	private boolean sendEvent(Event event, int attempt) {
-		if (retries == 0 || attempt < retries) {
-			if (event != null) {
-				try {
-					eventClient.add(event);
-					return true;
-				} catch (Exception e) { // something happened trying to send to
-										// core data - likely that the service
-										// is down.
-					logger.debug("Problem sending event for " + event.getDevice()
-							+ " to core data.  Retrying (attempt " + (attempt + 1) + ")...");
-					try {
-						Thread.sleep(delay);
-					} catch (InterruptedException interrupt) {
-						logger.debug("Event send delay interrupted");
-						interrupt.printStackTrace();
-					}
-					return sendEvent(event, ++attempt);
-				}
-			}
-		}
-		return false;
-	}
-
-	private void updateLastConnected(String deviceName) {
-		Device device = devices.getDevice(deviceName);
-		if (device != null) {
-			deviceClient.updateLastConnected(device.getId(), Calendar.getInstance().getTimeInMillis());
-			if (device.getOperatingState().equals(OperatingState.DISABLED))
-				devices.setDeviceByIdOpState(device.getId(), OperatingState.ENABLED);
-		} else {
-			logger.debug("No device found for device name: " + deviceName + ". Could not update last connected time");
-		}
-	}
-
 	public List<ResponseObject> sendCoreData(String deviceName, List<Reading> readings, Map<String, FischertechObject> objects) {
 		try{
 		
@@ -119,16 +59,9 @@ public class CoreDataMessageHandler {
 					ResponseObject resp = new ResponseObject(reading.getName(), reading.getValue());						
 					resps.add(resp);
 				}
-				boolean success = sendEvent(buildEvent(deviceName, readings), 0);
-				if (success) {
-					updateLastConnected(deviceName);
-					return resps;
-				}
-				else {
-					if (devices.getDevice(deviceName).getOperatingState().equals(OperatingState.ENABLED))
-						devices.setDeviceOpState(deviceName, OperatingState.DISABLED);
-					logger.error("Could not send event to core data for " + deviceName + ".  Check core data service");
-				}
+				// delivered by the publisher's workers, the caller never waits on core data
+				publisher.publish(deviceName, readings);
+				return resps;
 			} else
 				logger.debug("No profile object found for the device " + deviceName + ".  MQTT message ignored.");
 		}catch(Exception e){
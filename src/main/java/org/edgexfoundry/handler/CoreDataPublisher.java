@@ -0,0 +1,590 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.controller.EventClient;
+import org.edgexfoundry.data.DeviceStore;
+import org.edgexfoundry.data.EventSpool;
+import org.edgexfoundry.domain.core.Event;
+import org.edgexfoundry.domain.core.Reading;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.support.logging.client.EdgeXLogger;
+import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Sends readings to core data off the caller's thread. Readings wait in a bounded queue, workers
+// batch them per device into multi-reading events after the linger time. Once a send fails or the
+// queue overflows, events go to the spool until the replay thread has drained it, so with one
+// worker core data receives them in order and no worker waits on an unreachable core data.
+// Publishers never touch the spool, the workers and the replay thread write it.
+@Service
+public class CoreDataPublisher {
+
+	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(CoreDataPublisher.class);
+	
+	// what to do with a new reading when the queue is full
+	private enum Overflow { DROP_OLDEST, COALESCE, BLOCK }
+	
+	// readings of one device headed for the spool, retried with backoff when the spool cannot take
+	// them and they are the only copy of a batch
+	private static class Spill {
+		final String device;
+		final List<Reading> readings;
+		final boolean retry;
+		
+		Spill(String device, List<Reading> readings, boolean retry) {
+			this.device = device;
+			this.readings = readings;
+			this.retry = retry;
+		}
+	}
+	
+	// readings taken from the queue by a worker, sent live unless the publisher was spooling
+	private static class Batch {
+		final List<Pending> pendings = new ArrayList<Pending>();
+		boolean direct;
+	}
+	
+	private static class Pending {
+		final String device;
+		final String key;
+		final long queued;
+		Reading reading;
+		
+		Pending(String device, Reading reading) {
+			this.device = device;
+			this.key = device + "/" + reading.getName();
+			this.queued = System.nanoTime();
+			this.reading = reading;
+		}
+	}
+	
+	@Value("${service.connect.retries}")
+	private int retries;
+	@Value("${service.connect.wait}")
+	private long delay;
+	
+	@Value("${coredata.publisher.queue:1024}")
+	private int capacity;
+	@Value("${coredata.publisher.workers:1}")
+	private int workers;
+	@Value("${coredata.publisher.linger:50}")
+	private long linger;
+	@Value("${coredata.publisher.batch:64}")
+	private int batchSize;
+	@Value("${coredata.publisher.overflow:drop-oldest}")
+	private String overflowPolicy;
+	// readings pushed out of the queue that may wait for the spool
+	@Value("${coredata.publisher.spill:8192}")
+	private int spillCapacity;
+	@Value("${coredata.publisher.backoff.max:60000}")
+	private long maxBackoff;
+	// how often the spool is checked for events to replay, in milliseconds
+	@Value("${coredata.spool.replay.interval:5000}")
+	private long replayInterval;
+	
+	@Autowired
+	private DeviceClient deviceClient;
+	
+	@Autowired
+	private EventClient eventClient;
+	
+	@Autowired
+	private DeviceStore devices;
+	
+	@Autowired
+	private EventSpool spool;
+	
+	private Overflow overflow;
+	private long lingerNanos;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final ArrayDeque<Pending> queue = new ArrayDeque<Pending>();
+	// queued reading per device resource, used to coalesce on overflow
+	private final Map<String, Pending> latest = new HashMap<String, Pending>();
+	
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private volatile boolean running = false;
+	
+	// Routing of batches between core data and the spool, guarded by route. Batches taken from the
+	// queue are in hand until sent or spooled, readings pushed out of the queue meanwhile are parked
+	// so they land in the spool behind them. Spool writes wait in the outbox in the order they must
+	// land and are written outside route by one thread at a time, holding writer.
+	private final Object route = new Object();
+	private boolean spooling = false;
+	private int inHand = 0;
+	private int live = 0;
+	private final List<Spill> parked = new ArrayList<Spill>();
+	private final ArrayDeque<Spill> outbox = new ArrayDeque<Spill>();
+	// readings parked or in the outbox, evictions beyond the spill capacity are dropped
+	private int unwritten = 0;
+	private boolean writing = false;
+	// spool writes completed, lets replay tell an empty spool from a write it raced with
+	private long written = 0;
+	private final Object writer = new Object();
+	
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong spilled = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong publishedEvents = new AtomicLong();
+	private final AtomicLong publishedReadings = new AtomicLong();
+	private final AtomicLong failedEvents = new AtomicLong();
+	
+	@PostConstruct
+	public void start() {
+		if (overflowPolicy.equalsIgnoreCase("coalesce"))
+			overflow = Overflow.COALESCE;
+		else if (overflowPolicy.equalsIgnoreCase("block"))
+			overflow = Overflow.BLOCK;
+		else
+			overflow = Overflow.DROP_OLDEST;
+		lingerNanos = TimeUnit.MILLISECONDS.toNanos(linger);
+		// events left from an earlier run go out before new ones
+		synchronized (route) {
+			spooling = !spool.isEmpty();
+		}
+		running = true;
+		for (int i = 0; i < Math.max(1, workers); i++) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					work();
+				}
+			}, "coredata-publisher-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+		Thread replayer = new Thread(new Runnable() {
+			public void run() {
+				replay();
+			}
+		}, "coredata-spool-replay");
+		replayer.setDaemon(true);
+		threads.add(replayer);
+		replayer.start();
+	}
+	
+	@PreDestroy
+	public void stop() {
+		running = false;
+		lock.lock();
+		try {
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Thread thread: threads)
+			thread.interrupt();
+		// keep what is still queued for the next start
+		List<Pending> remaining = new ArrayList<Pending>();
+		lock.lock();
+		try {
+			remaining.addAll(queue);
+			queue.clear();
+			latest.clear();
+		} finally {
+			lock.unlock();
+		}
+		synchronized (route) {
+			outbox.addAll(parked);
+			parked.clear();
+			outbox.addAll(group(remaining));
+			unwritten += remaining.size();
+		}
+		write();
+	}
+	
+	public void publish(String deviceName, List<Reading> readings) {
+		if (readings == null)
+			return;
+		List<Pending> evicted = new ArrayList<Pending>();
+		lock.lock();
+		try {
+			for (Reading reading: readings)
+				enqueue(new Pending(deviceName, reading), evicted);
+			// still holding the lock, so no worker takes the newer readings before these are placed
+			if (!evicted.isEmpty())
+				evict(evicted);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	// called with the lock held, readings pushed out of a full queue are added to evicted
+	private void enqueue(Pending pending, List<Pending> evicted) {
+		while (queue.size() >= capacity) {
+			if (overflow == Overflow.COALESCE) {
+				Pending queued = latest.get(pending.key);
+				if (queued != null) {
+					queued.reading = pending.reading;
+					coalesced.incrementAndGet();
+					return;
+				}
+			} else if (overflow == Overflow.BLOCK && running) {
+				try {
+					notFull.await();
+					continue;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					evicted.add(pending);
+					return;
+				}
+			}
+			Pending oldest = queue.poll();
+			forget(oldest);
+			evicted.add(oldest);
+		}
+		queue.add(pending);
+		latest.put(pending.key, pending);
+		enqueued.incrementAndGet();
+	}
+	
+	private void forget(Pending pending) {
+		if (latest.get(pending.key) == pending)
+			latest.remove(pending.key);
+	}
+	
+	// Readings the queue had no room for wait behind the batches in hand, then in the outbox for a
+	// worker to spool them
+	private void evict(List<Pending> evicted) {
+		synchronized (route) {
+			spooling = true;
+			if (unwritten + evicted.size() > spillCapacity) {
+				// the spool is not keeping up
+				dropped.addAndGet(evicted.size());
+				return;
+			}
+			unwritten += evicted.size();
+			if (inHand > 0)
+				parked.addAll(group(evicted));
+			else
+				outbox.addAll(group(evicted));
+		}
+	}
+	
+	// One spill per run of readings of the same device
+	private List<Spill> group(List<Pending> pendings) {
+		List<Spill> spills = new ArrayList<Spill>();
+		int start = 0;
+		while (start < pendings.size()) {
+			String deviceName = pendings.get(start).device;
+			List<Reading> readings = new ArrayList<Reading>();
+			int end = start;
+			while (end < pendings.size() && pendings.get(end).device.equals(deviceName))
+				readings.add(pendings.get(end++).reading);
+			spills.add(new Spill(deviceName, readings, false));
+			start = end;
+		}
+		return spills;
+	}
+	
+	// Spool the outbox in order, a writer already at it covers what was added meanwhile
+	private void write() {
+		synchronized (writer) {
+			while (true) {
+				Spill spill;
+				synchronized (route) {
+					spill = outbox.poll();
+					writing = spill != null;
+					if (spill == null)
+						return;
+				}
+				try {
+					store(spill);
+				} catch (Exception e) {
+					logger.error("Cannot spool the readings for " + spill.device + ": " + e.getMessage());
+				} finally {
+					synchronized (route) {
+						writing = false;
+						written++;
+						if (!spill.retry)
+							unwritten -= spill.readings.size();
+					}
+				}
+			}
+		}
+	}
+	
+	private void work() {
+		while (running) {
+			Batch batch;
+			try {
+				batch = take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			Map<String, List<Reading>> events = new LinkedHashMap<String, List<Reading>>();
+			for (Pending pending: batch.pendings) {
+				List<Reading> readings = events.get(pending.device);
+				if (readings == null) {
+					readings = new ArrayList<Reading>();
+					events.put(pending.device, readings);
+				}
+				readings.add(pending.reading);
+			}
+			boolean direct = batch.direct;
+			List<Spill> spills = new ArrayList<Spill>();
+			try {
+				for (Map.Entry<String, List<Reading>> event: events.entrySet()) {
+					if (direct) {
+						if (send(event.getKey(), event.getValue()))
+							continue;
+						// the rest of the batch follows the failed event into the spool
+						direct = false;
+						failed(event.getKey());
+					}
+					spills.add(new Spill(event.getKey(), event.getValue(), true));
+				}
+			} finally {
+				synchronized (route) {
+					outbox.addAll(spills);
+					if (batch.direct)
+						live--;
+					if (--inHand == 0 && !parked.isEmpty()) {
+						outbox.addAll(parked);
+						parked.clear();
+					}
+				}
+			}
+			write();
+		}
+	}
+	
+	// Wait until the oldest reading has lingered long enough or a full batch is queued, then drain it
+	private Batch take() throws InterruptedException {
+		Batch batch = new Batch();
+		lock.lock();
+		try {
+			while (running) {
+				Pending oldest = queue.peek();
+				if (oldest == null) {
+					notEmpty.await();
+					continue;
+				}
+				long wait = oldest.queued + lingerNanos - System.nanoTime();
+				if (queue.size() < batchSize && wait > 0) {
+					notEmpty.awaitNanos(wait);
+					continue;
+				}
+				while (batch.pendings.size() < batchSize && !queue.isEmpty()) {
+					Pending pending = queue.poll();
+					forget(pending);
+					batch.pendings.add(pending);
+				}
+				// in hand before the lock is released, so readings evicted after it are parked behind it
+				synchronized (route) {
+					batch.direct = !spooling;
+					inHand++;
+					if (batch.direct)
+						live++;
+				}
+				notFull.signalAll();
+				break;
+			}
+		} finally {
+			lock.unlock();
+		}
+		return batch;
+	}
+	
+	// Send an event of a live batch, false when core data failed
+	private boolean send(String deviceName, List<Reading> readings) {
+		Event event = new Event(deviceName);
+		event.setReadings(readings);
+		try {
+			eventClient.add(event);
+		} catch (Exception e) { // something happened trying to send to
+								// core data - likely that the service
+								// is down.
+			failedEvents.incrementAndGet();
+			logger.error("Could not send event to core data for " + deviceName + ".  Check core data service");
+			return false;
+		}
+		published(deviceName, readings);
+		return true;
+	}
+	
+	// Switch to the spool after a failed send and disable the device, metadata may be down as well
+	private void failed(String deviceName) {
+		synchronized (route) {
+			if (!spooling)
+				logger.info("Core data unreachable, spooling events until it is back");
+			spooling = true;
+		}
+		try {
+			Device device = devices.getDevice(deviceName);
+			if (device != null && device.getOperatingState().equals(OperatingState.ENABLED))
+				devices.setDeviceOpState(deviceName, OperatingState.DISABLED);
+		} catch (Exception e) {
+			logger.error("Could not disable device " + deviceName + ": " + e.getMessage());
+		}
+	}
+	
+	// Without a spool the readings of a batch are retried with backoff, they are the only copy
+	private void store(Spill spill) {
+		String deviceName = spill.device;
+		List<Reading> readings = spill.readings;
+		if (spool.append(deviceName, readings)) {
+			if (!spill.retry)
+				spilled.addAndGet(readings.size());
+			return;
+		}
+		if (!spill.retry) {
+			dropped.addAndGet(readings.size());
+			return;
+		}
+		Event event = new Event(deviceName);
+		event.setReadings(readings);
+		long backoff = delay;
+		for (int attempt = 0; running && (retries == 0 || attempt < retries); attempt++) {
+			logger.debug("Problem sending event for " + deviceName
+					+ " to core data.  Retrying (attempt " + (attempt + 1) + ") in " + backoff + "ms...");
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException interrupt) {
+				logger.debug("Event send delay interrupted");
+				Thread.currentThread().interrupt();
+				break;
+			}
+			backoff = Math.min(backoff * 2, maxBackoff);
+			try {
+				eventClient.add(event);
+			} catch (Exception e) {
+				continue;
+			}
+			published(deviceName, readings);
+			return;
+		}
+		dropped.addAndGet(readings.size());
+	}
+	
+	private void published(String deviceName, List<Reading> readings) {
+		publishedEvents.incrementAndGet();
+		publishedReadings.addAndGet(readings.size());
+		updateLastConnected(deviceName);
+	}
+	
+	// Drain the spool to core data in order whenever it is reachable again
+	private void replay() {
+		while (running) {
+			try {
+				Thread.sleep(replayInterval);
+			} catch (InterruptedException e) {
+				return;
+			}
+			// evictions added while no worker was around
+			write();
+			while (running) {
+				long seen;
+				synchronized (route) {
+					// live sends under way are older than anything spooled
+					if (live > 0)
+						break;
+					seen = written;
+				}
+				Event event = spool.peek();
+				if (event == null) {
+					synchronized (route) {
+						// batches in hand or writes waiting may still be spooled, switch back only when none are
+						if (spooling && inHand == 0 && outbox.isEmpty() && !writing && written == seen) {
+							logger.info("Event spool drained, sending events to core data directly");
+							spooling = false;
+						}
+					}
+					break;
+				}
+				try {
+					eventClient.add(event);
+				} catch (Exception e) {
+					logger.debug("Core data still unreachable, " + spool.getStatistics().get("bytes") + " bytes spooled");
+					break;
+				}
+				spool.commit();
+			}
+		}
+	}
+	
+	private void updateLastConnected(String deviceName) {
+		try {
+			Device device = devices.getDevice(deviceName);
+			if (device != null) {
+				deviceClient.updateLastConnected(device.getId(), Calendar.getInstance().getTimeInMillis());
+				if (device.getOperatingState().equals(OperatingState.DISABLED))
+					devices.setDeviceByIdOpState(device.getId(), OperatingState.ENABLED);
+			} else {
+				logger.debug("No device found for device name: " + deviceName + ". Could not update last connected time");
+			}
+		} catch (Exception e) {
+			logger.error("Could not update last connected time for " + deviceName + ": " + e.getMessage());
+		}
+	}
+	
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		int depth;
+		lock.lock();
+		try {
+			depth = queue.size();
+		} finally {
+			lock.unlock();
+		}
+		stats.put("overflow", overflow == null ? overflowPolicy : overflow.name().toLowerCase().replace('_', '-'));
+		stats.put("capacity", capacity);
+		stats.put("depth", depth);
+		stats.put("enqueued", enqueued.get());
+		stats.put("dropped", dropped.get());
+		stats.put("spilled", spilled.get());
+		stats.put("coalesced", coalesced.get());
+		stats.put("publishedEvents", publishedEvents.get());
+		stats.put("publishedReadings", publishedReadings.get());
+		stats.put("failedEvents", failedEvents.get());
+		synchronized (route) {
+			stats.put("spooling", spooling);
+			stats.put("unwritten", unwritten);
+		}
+		stats.put("spool", spool.getStatistics());
+		return stats;
+	}
+	
+}
@@ -22,8 +22,16 @@ package org.edgexfoundry.handler;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
 
 import org.edgexfoundry.data.ObjectStore;
 import org.edgexfoundry.data.ProfileStore;
@@ -74,6 +82,9 @@ public class FischertechHandler {
 	@Autowired
 	private CoreDataMessageHandler processor;
 	
+	@Autowired
+	private OperationExecutor executor;
+	
 	@Value("${fischertech.device.init:#{null}}")
 	private String fischertechInit;
 	@Value("${fischertech.device.init.args:#{null}}")
@@ -84,7 +95,34 @@ public class FischertechHandler {
 	@Value("${fischertech.device.remove.args:#{null}}")
 	private String fischertechRemoveArgs;
 	
-	public Map<String, Transaction> transactions = new HashMap<String, Transaction>();
+	// age in milliseconds up to which a get is answered from the object cache, 0 always reads the
+	// device. Resources can override it as a comma separated list of resource=milliseconds.
+	@Value("${fischertech.cache.maxage:0}")
+	private long cacheMaxAge;
+	@Value("${fischertech.cache.maxage.resources:}")
+	private String cacheMaxAgeResources;
+	
+	private Map<String, Long> resourceMaxAge = new HashMap<String, Long>();
+	
+	// time in milliseconds a command has to collect the readings of all its operations
+	@Value("${service.transaction.timeout:10000}")
+	private long transactionTimeout;
+	
+	public Map<String, Transaction> transactions = new ConcurrentHashMap<String, Transaction>();
+	
+	// gets reading the device right now keyed by device id and command, identical gets share them
+	private final Map<String, CompletableFuture<Map<String, String>>> reads = new ConcurrentHashMap<String, CompletableFuture<Map<String, String>>>();
+	private final AtomicLong deviceReads = new AtomicLong();
+	private final AtomicLong coalescedReads = new AtomicLong();
+	
+	@PostConstruct
+	public void parseCachePolicy() {
+		for (String entry: cacheMaxAgeResources.split(",")) {
+			String[] pair = entry.split("=");
+			if (pair.length == 2)
+				resourceMaxAge.put(pair[0].trim().toLowerCase(), Long.parseLong(pair[1].trim()));
+		}
+	}
 	
 	public void initialize() {
 		if (driver != null)
@@ -122,28 +160,86 @@ public class FischertechHandler {
 	}
 
 	public Map<String, String> executeCommand(FischertechDevice device, String cmd, String arguments) {
-		// set immediate flag to false to read from object cache of last readings
+		try {
+			return executeCommandAsync(device, cmd, arguments, 0L).get();
+		} catch (InterruptedException e) {
+			// Exit quietly on break
+			return null;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new ServiceException(e.getCause());
+		}
+	}
+	
+	// Start the operations of the command, the future completes with the readings sent to core data
+	// maxAge in milliseconds overrides the configured cache policy for a get, null keeps it
+	public CompletableFuture<Map<String, String>> executeCommandAsync(FischertechDevice device, String cmd, String arguments, Long maxAge) {
+		if (arguments == null) {
+			long age = (maxAge != null) ? maxAge : getMaxAge(cmd);
+			if (age > 0) {
+				Map<String, String> cached = new HashMap<String, String>();
+				if (readCache(device, cmd, age, cached))
+					return CompletableFuture.completedFuture(cached);
+			}
+		}
+		
+		if (arguments != null)
+			return startCommand(device, cmd, arguments);
+		
+		// a get joins the same get already in flight, so one device read and one core data event
+		// answer all of them
+		String key = device.getId() + "/" + cmd.toLowerCase();
+		CompletableFuture<Map<String, String>> read = new CompletableFuture<Map<String, String>>();
+		CompletableFuture<Map<String, String>> inFlight = reads.putIfAbsent(key, read);
+		if (inFlight != null) {
+			coalescedReads.incrementAndGet();
+			return inFlight;
+		}
+		deviceReads.incrementAndGet();
+		try {
+			startCommand(device, cmd, null).whenComplete((readings, cause) -> {
+				reads.remove(key, read);
+				if (cause != null)
+					read.completeExceptionally(cause);
+				else
+					read.complete(readings);
+			});
+		} catch (RuntimeException e) {
+			reads.remove(key, read);
+			read.completeExceptionally(e);
+			throw e;
+		}
+		return read;
+	}
+	
+	private CompletableFuture<Map<String, String>> startCommand(FischertechDevice device, String cmd, String arguments) {
 		Boolean immediate = true;
 		Transaction transaction = new Transaction();
 		String transactionId = transaction.getTransactionId();
 		transactions.put(transactionId, transaction);
-		executeOperations(device, cmd, arguments, immediate, transactionId);
-		
-		synchronized (transactions) {
-			while (!transactions.get(transactionId).isFinished()) {
-				try {
-					transactions.wait();
-				} catch (InterruptedException e) {
-					// Exit quietly on break
-					return null;
-				}
-			}
+		try {
+			executeOperations(device, cmd, arguments, immediate, transactionId);
+		} catch (RuntimeException e) {
+			transactions.remove(transactionId);
+			throw e;
 		}
+		transaction.seal();
 		
-		List<Reading> readings = transactions.get(transactionId).getReadings();
-		transactions.remove(transactionId);
+		return executor.within(transaction.getFuture(), transactionTimeout, "Command " + cmd + " on " + device.getName())
+				.whenComplete((readings, cause) -> transactions.remove(transactionId))
+				.thenApply(readings -> respond(device.getName(), transaction, readings));
+	}
 	
-		return sendTransaction(device.getName(), readings);
+	// Published readings plus the values of superseded sets and the frame each set went out on,
+	// reported as <name>.frame
+	private Map<String, String> respond(String deviceName, Transaction transaction, List<Reading> readings) {
+		Map<String, String> response = sendTransaction(deviceName, readings);
+		for (Reading reading: transaction.getEchoes())
+			response.put(reading.getName(), reading.getValue());
+		for (Map.Entry<String, Integer> frame: transaction.getFrames().entrySet())
+			response.put(frame.getKey() + ".frame", String.valueOf(frame.getValue()));
+		return response;
 	}
 	
 	public Map<String, String> sendTransaction(String deviceName, List<Reading> readings) {
@@ -154,6 +250,61 @@ public class FischertechHandler {
 		return valueDescriptorMap;
 	}
 
+	public Map<String, Object> getReadStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("deviceReads", deviceReads.get());
+		stats.put("coalescedReads", coalescedReads.get());
+		stats.put("inFlight", reads.size());
+		return stats;
+	}
+	
+	private long getMaxAge(String commandName) {
+		Long age = resourceMaxAge.get(commandName.toLowerCase());
+		return (age != null) ? age : cacheMaxAge;
+	}
+	
+	// Collect the values of a get command from the controller's last input snapshot or the object
+	// cache, false when any of them is missing or older than maxAge
+	private boolean readCache(FischertechDevice device, String commandName, long maxAge, Map<String, String> values) {
+		Map<String, Map<String, List<ResourceOperation>>> resources = profiles.getCommands().get(device.getName());
+		Map<String, FischertechObject> objects = profiles.getObjects().get(device.getName());
+		if (resources == null || objects == null)
+			return false;
+		Map<String, List<ResourceOperation>> resource = resources.get(commandName.toLowerCase());
+		if (resource == null || resource.get("get") == null)
+			return false;
+		for (ResourceOperation operation: resource.get("get")) {
+			if (operation.getResource() != null) {
+				if (!operation.getOperation().equals("get") || !readCache(device, operation.getResource(), maxAge, values))
+					return false;
+				continue;
+			}
+			if (!"value".equals(operation.getProperty()))
+				return false;
+			// inputs are refreshed every cycle, the cache only holds their last change
+			FischertechObject object = objects.get(operation.getObject());
+			String input = (object != null) ? driver.getInput(device.getAddressable(), object.getAttributes(), maxAge) : null;
+			if (input != null) {
+				List<Reading> readings = objectCache.build(device, operation, input);
+				if (readings.isEmpty())
+					return false;
+				for (Reading reading: readings)
+					values.put(reading.getName(), reading.getValue());
+				continue;
+			}
+			List<String> names = profiles.getOperationPlan(device.getName(), operation).getNames();
+			if (names.isEmpty())
+				return false;
+			for (String name: names) {
+				String value = objectCache.get(device.getId(), name, maxAge);
+				if (value == null)
+					return false;
+				values.put(name, value);
+			}
+		}
+		return true;
+	}
+	
 	private void executeOperations(FischertechDevice device, String commandName, String arguments, Boolean immediate, String transactionId) {
 		String method = (arguments == null) ? "get" : "set";
 		
@@ -191,7 +342,20 @@ public class FischertechHandler {
 			if (requiresQuery(immediate, method, device, operation)) {
 				String opId = transactions.get(transactionId).newOpId();
 				final String parameter = val;
-				new Thread(() -> driver.process(operation, device, object, parameter, transactionId, opId)).start();;
+				try {
+					executor.execute(() -> {
+						try {
+							driver.process(operation, device, object, parameter, transactionId, opId);
+						} catch (RuntimeException e) {
+							logger.error("Operation " + objectName + " failed for " + deviceName + ": " + e.getMessage());
+							failTransaction(transactionId, e);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					logger.error("Operation " + objectName + " rejected for " + deviceName + ": " + e.getMessage());
+					completeTransaction(transactionId, opId, new ArrayList<Reading>());
+					throw new ServiceException(e);
+				}
 			}			
 		}
 	}
@@ -249,18 +413,18 @@ public class FischertechHandler {
 	
 	private String parseArguments(String arguments, ResourceOperation operation, Device device, FischertechObject object, Map<String, FischertechObject> objects) {
 		PropertyValue value = object.getProperties().getValue();
-		String val = parseArg(arguments, operation, value, operation.getParameter());
+		String val = parseArg(arguments, operation, object, operation.getParameter());
 		
 		// if the written value is on a multiplexed handle, read the current value and apply the mask first
 		if (!value.mask().equals(BigInteger.ZERO)) {
 			String result = driver.processCommand("get", device.getAddressable(), object.getAttributes(), val);
-			val = transform.maskedValue(value, val, result);
+			val = transform.maskedValue(object.getTransformPlan(), val, result);
 			if (operation.getSecondary() != null) {
 				for (String secondary: operation.getSecondary()) {
 					if (objects.get(secondary) != null) {
-						PropertyValue secondaryValue = objects.get(secondary).getProperties().getValue();
-						String secondVal = parseArg(arguments, operation, secondaryValue, secondary);
-						val = transform.maskedValue(secondaryValue, secondVal, "0x" + val);
+						FischertechObject secondaryObject = objects.get(secondary);
+						String secondVal = parseArg(arguments, operation, secondaryObject, secondary);
+						val = transform.maskedValue(secondaryObject.getTransformPlan(), secondVal, "0x" + val);
 					}
 				}
 			}
@@ -270,7 +434,8 @@ public class FischertechHandler {
 		return val;
 	}
 	
-	private String parseArg(String arguments, ResourceOperation operation, PropertyValue value, String object) {
+	private String parseArg(String arguments, ResourceOperation operation, FischertechObject fischertechObject, String object) {
+		PropertyValue value = fischertechObject.getProperties().getValue();
 		// parse the argument string and get the "value" parameter
 		JsonObject args;
 		String val = null;
@@ -305,23 +470,30 @@ public class FischertechHandler {
 		}
 		
 		if (!value.mask().equals(BigInteger.ZERO) && passed) {
-			val = transform.format(value, val);
+			val = transform.format(fischertechObject.getTransformPlan(), val);
 		}
 		
 		return val;
 	}
 
 	public void completeTransaction(String transactionId, String opId, List<Reading> readings) {		
-		synchronized (transactions) {
-			transactions.get(transactionId).finishOp(opId, readings);
-			transactions.notifyAll();
-		}
+		Transaction transaction = transactions.get(transactionId);
+		// gone once the transaction timed out or failed
+		if (transaction != null)
+			transaction.finishOp(opId, readings);
 	}
 	
+	// publish false for readings another operation publishes, frame is the TID of a set
+	public void completeTransaction(String transactionId, String opId, List<Reading> readings, boolean publish, Integer frame) {
+		Transaction transaction = transactions.get(transactionId);
+		if (transaction != null)
+			transaction.finishOp(opId, readings, publish, frame);
+	}
 	
-	
-	
-	
-	
+	public void failTransaction(String transactionId, Throwable cause) {
+		Transaction transaction = transactions.get(transactionId);
+		if (transaction != null)
+			transaction.fail(cause);
+	}
 	
 }
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.support.logging.client.EdgeXLogger;
+import org.edgexfoundry.support.logging.client.EdgeXLoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Runs device operations on a bounded pool, or one virtual thread per operation when the JDK has
+// them, and starts the long running controller I/O threads
+@Service
+public class OperationExecutor {
+
+	private final static EdgeXLogger logger = EdgeXLoggerFactory.getEdgeXLogger(OperationExecutor.class);
+	
+	// pool or virtual
+	@Value("${service.executor.mode:pool}")
+	private String mode;
+	@Value("${service.executor.threads:16}")
+	private int threads;
+	@Value("${service.executor.queue:256}")
+	private int queueSize;
+	// time in milliseconds a submitter waits for queue space before the operation is rejected
+	@Value("${service.executor.wait:1000}")
+	private long submitWait;
+	
+	private ExecutorService executor;
+	private ThreadPoolExecutor pool;
+	private boolean virtual = false;
+	// fails futures that run past their deadline
+	private ScheduledThreadPoolExecutor timer;
+	
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger ioThreads = new AtomicInteger();
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong waitSum = new AtomicLong();
+	private final AtomicLong waitMax = new AtomicLong();
+	
+	@PostConstruct
+	public void start() {
+		timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "device-op-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		if (mode.equalsIgnoreCase("virtual")) {
+			try {
+				executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				virtual = true;
+				logger.info("Device operations run on virtual threads");
+				return;
+			} catch (Exception e) {
+				logger.info("Virtual threads are not available on this JVM, using a pool of " + threads + " threads");
+			}
+		}
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "device-op-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), factory, (runnable, executor) -> {
+					// backpressure, hold the submitter until a slot frees up or the wait runs out
+					try {
+						if (!executor.isShutdown() && executor.getQueue().offer(runnable, submitWait, TimeUnit.MILLISECONDS))
+							return;
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new RejectedExecutionException("Device operation queue full");
+				});
+		pool.allowCoreThreadTimeOut(true);
+		executor = pool;
+	}
+	
+	@PreDestroy
+	public void stop() {
+		if (executor != null)
+			executor.shutdownNow();
+		if (timer != null)
+			timer.shutdownNow();
+	}
+	
+	// Throws RejectedExecutionException when the pool and its queue stay full for the submit wait
+	public void execute(Runnable operation) {
+		long queued = System.nanoTime();
+		submitted.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				long wait = System.nanoTime() - queued;
+				started.incrementAndGet();
+				waitSum.addAndGet(wait);
+				waitMax.accumulateAndGet(wait, Math::max);
+				active.incrementAndGet();
+				try {
+					operation.run();
+				} finally {
+					active.decrementAndGet();
+					completed.incrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+	
+	// Fail the future with a TimeoutException unless it completes within timeout milliseconds
+	public <T> CompletableFuture<T> within(CompletableFuture<T> future, long timeout, String what) {
+		if (timeout <= 0 || future.isDone())
+			return future;
+		ScheduledFuture<?> deadline = timer.schedule(() -> {
+			future.completeExceptionally(new TimeoutException(what + " did not complete within " + timeout + "ms"));
+		}, timeout, TimeUnit.MILLISECONDS);
+		future.whenComplete((result, cause) -> deadline.cancel(false));
+		return future;
+	}
+	
+	// Dedicated platform thread for a loop that lives as long as its controller connection
+	public Thread startThread(String name, Runnable loop) {
+		Thread thread = new Thread(() -> {
+			ioThreads.incrementAndGet();
+			try {
+				loop.run();
+			} finally {
+				ioThreads.decrementAndGet();
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		long count = started.get();
+		stats.put("mode", virtual ? "virtual" : "pool");
+		if (pool != null) {
+			stats.put("poolSize", pool.getPoolSize());
+			stats.put("maxPoolSize", pool.getMaximumPoolSize());
+			stats.put("largestPoolSize", pool.getLargestPoolSize());
+			stats.put("queueDepth", pool.getQueue().size());
+			stats.put("queueCapacity", queueSize);
+		}
+		stats.put("activeOperations", active.get());
+		stats.put("ioThreads", ioThreads.get());
+		stats.put("submitted", submitted.get());
+		stats.put("completed", completed.get());
+		stats.put("rejected", rejected.get());
+		stats.put("meanQueueWaitMs", count == 0 ? 0.0 : waitSum.get() / (double) count / 1000000.0);
+		stats.put("maxQueueWaitMs", waitMax.get() / 1000000.0);
+		return stats;
+	}
+	
+}
@@ -19,6 +19,7 @@
  *******************************************************************************/
 package org.edgexfoundry.handler;
 
+import org.edgexfoundry.data.DeviceStateCache;
 import org.edgexfoundry.data.DeviceStore;
 import org.edgexfoundry.data.WatcherStore;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,15 +34,21 @@ public class UpdateHandler {
 	@Autowired
 	private DeviceStore devices;
 	
+	@Autowired
+	private DeviceStateCache states;
+	
 	public boolean addDevice(String deviceId) {
+		states.invalidate(deviceId);
 		return devices.add(deviceId);
 	}
 
 	public boolean updateDevice(String deviceId) {
+		states.invalidate(deviceId);
 		return devices.update(deviceId);
 	}
 
 	public boolean deleteDevice(String deviceId) {
+		states.invalidate(deviceId);
 		return devices.remove(deviceId);
 	}
 	
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.handler.OperationExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DeviceStateCacheTest {
+
+	private DeviceStateCache cache;
+	private OperationExecutor executor;
+	// answers the metadata request, may change the cache while it runs
+	private Supplier<List<Device>> metadata = () -> new ArrayList<Device>();
+	
+	private static Device device(String id, AdminState adminState, OperatingState operatingState) {
+		Device device = new Device();
+		device.setId(id);
+		device.setName(id);
+		device.setAdminState(adminState);
+		device.setOperatingState(operatingState);
+		return device;
+	}
+	
+	@Before
+	public void setup() {
+		DeviceClient client = (DeviceClient) Proxy.newProxyInstance(DeviceClient.class.getClassLoader(),
+				new Class<?>[] { DeviceClient.class }, (proxy, method, args) -> {
+					if (method.getName().equals("devicesForServiceByName"))
+						return metadata.get();
+					if (method.getName().equals("toString"))
+						return "DeviceClient";
+					if (method.getName().equals("hashCode"))
+						return System.identityHashCode(proxy);
+					if (method.getName().equals("equals"))
+						return proxy == args[0];
+					throw new UnsupportedOperationException(method.getName());
+				});
+		executor = new OperationExecutor();
+		ReflectionTestUtils.setField(executor, "mode", "pool");
+		ReflectionTestUtils.setField(executor, "threads", 1);
+		ReflectionTestUtils.setField(executor, "queueSize", 1);
+		ReflectionTestUtils.setField(executor, "submitWait", 0L);
+		executor.start();
+		cache = new DeviceStateCache();
+		ReflectionTestUtils.setField(cache, "deviceClient", client);
+		ReflectionTestUtils.setField(cache, "executor", executor);
+		ReflectionTestUtils.setField(cache, "serviceName", "device-fischertechnik");
+		ReflectionTestUtils.setField(cache, "ttl", 30000L);
+	}
+	
+	@After
+	public void teardown() {
+		executor.stop();
+	}
+	
+	@Test
+	public void testLoadKeepsEntriesChangedDuringTheRequest() {
+		cache.put(device("a", AdminState.UNLOCKED, OperatingState.ENABLED));
+		cache.put(device("b", AdminState.LOCKED, OperatingState.ENABLED));
+		metadata = () -> {
+			// a command disables a and a callback unlocks b after metadata answered
+			List<Device> devices = Arrays.asList(device("a", AdminState.UNLOCKED, OperatingState.ENABLED),
+					device("b", AdminState.LOCKED, OperatingState.ENABLED));
+			cache.setOperatingState("a", OperatingState.DISABLED);
+			cache.put(device("b", AdminState.UNLOCKED, OperatingState.ENABLED));
+			return devices;
+		};
+		// a miss loads in the caller
+		assertNull(cache.get("unknown").getAdminState());
+		assertEquals(OperatingState.DISABLED, cache.get("a").getOperatingState());
+		assertEquals(AdminState.UNLOCKED, cache.get("b").getAdminState());
+	}
+	
+	@Test
+	public void testLoadDropsDevicesMetadataNoLongerHas() {
+		cache.put(device("a", AdminState.UNLOCKED, OperatingState.ENABLED));
+		cache.put(device("c", AdminState.UNLOCKED, OperatingState.ENABLED));
+		metadata = () -> Arrays.asList(device("a", AdminState.LOCKED, OperatingState.ENABLED));
+		cache.get("unknown");
+		assertEquals(AdminState.LOCKED, cache.get("a").getAdminState());
+		metadata = () -> new ArrayList<Device>();
+		assertNull(cache.get("c").getAdminState());
+	}
+	
+	@Test
+	public void testStaleEntriesReloadOnTheOperationExecutor() throws InterruptedException {
+		ReflectionTestUtils.setField(cache, "ttl", 0L);
+		cache.put(device("a", AdminState.UNLOCKED, OperatingState.ENABLED));
+		metadata = () -> Arrays.asList(device("a", AdminState.LOCKED, OperatingState.ENABLED));
+		// answered stale while the reload runs in the background
+		assertEquals(AdminState.UNLOCKED, cache.get("a").getAdminState());
+		for (int i = 0; i < 100 && cache.get("a").getAdminState() != AdminState.LOCKED; i++)
+			Thread.sleep(10);
+		assertEquals(AdminState.LOCKED, cache.get("a").getAdminState());
+		assertTrue((Long) executor.getStatistics().get("submitted") > 0);
+	}
+	
+}
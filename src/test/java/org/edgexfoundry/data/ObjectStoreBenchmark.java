@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.data;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.edgexfoundry.domain.FischertechDevice;
+import org.edgexfoundry.domain.FischertechObject;
+import org.edgexfoundry.domain.OperationPlan;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceObject;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.domain.meta.ProfileProperty;
+import org.edgexfoundry.domain.meta.PropertyValue;
+import org.edgexfoundry.domain.meta.ResourceOperation;
+import org.edgexfoundry.fischertech.ObjectTransform;
+import org.edgexfoundry.handler.CoreDataMessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Caching and reading device values from several threads at once, each thread on its own device
+// against all threads on one device. Run with main() from the test classpath.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectStoreBenchmark {
+
+	private static final int DEVICES = 4;
+	private static final String OBJECT = "Input";
+	private static final String VALUE = "0x3412";
+	
+	private ObjectStore store;
+	private FischertechDevice[] devices;
+	private ResourceOperation operation;
+	
+	private final AtomicInteger threads = new AtomicInteger();
+	
+	@State(Scope.Thread)
+	public static class Slot {
+		int device;
+		
+		@Setup
+		public void setup(ObjectStoreBenchmark benchmark) {
+			device = benchmark.threads.getAndIncrement() % DEVICES;
+		}
+	}
+	
+	@Setup
+	public void setup() {
+		ProfileStore profiles = new ProfileStore();
+		store = new ObjectStore();
+		store.setTransformData(true);
+		ObjectTransform transform = new ObjectTransform();
+		ReflectionTestUtils.setField(transform, "objectCache", store);
+		ReflectionTestUtils.setField(store, "profiles", profiles);
+		ReflectionTestUtils.setField(store, "transform", transform);
+		ReflectionTestUtils.setField(store, "processor", new CoreDataMessageHandler());
+		ReflectionTestUtils.setField(store, "CACHE_SIZE", 8);
+		
+		PropertyValue value = new PropertyValue();
+		value.setType("Integer");
+		value.setSize("4");
+		value.setWord("2");
+		value.setLSB("true");
+		value.setMask("0x00");
+		value.setShift("0");
+		value.setSigned(false);
+		value.setScale("1");
+		value.setOffset("0");
+		value.setBase("0");
+		ProfileProperty properties = new ProfileProperty();
+		properties.setValue(value);
+		DeviceObject object = new DeviceObject();
+		object.setName(OBJECT);
+		object.setProperties(properties);
+		FischertechObject fischertechObject = new FischertechObject(object);
+		
+		operation = new ResourceOperation("get", OBJECT);
+		OperationPlan plan = new OperationPlan(Collections.singletonList(fischertechObject), Collections.singletonList(OBJECT));
+		
+		@SuppressWarnings("unchecked")
+		Map<String, Map<ResourceOperation, OperationPlan>> plans =
+				(Map<String, Map<ResourceOperation, OperationPlan>>) ReflectionTestUtils.getField(profiles, "plans");
+		devices = new FischertechDevice[DEVICES];
+		for (int i = 0; i < DEVICES; i++) {
+			Device device = new Device();
+			device.setId("device" + i);
+			device.setName("TXT" + i);
+			device.setProfile(new DeviceProfile());
+			devices[i] = new FischertechDevice(device);
+			profiles.getObjects().put(device.getName(), Collections.singletonMap(OBJECT, fischertechObject));
+			Map<ResourceOperation, OperationPlan> devicePlans = new IdentityHashMap<>();
+			devicePlans.put(operation, plan);
+			plans.put(device.getName(), devicePlans);
+			store.put(devices[i], operation, VALUE);
+		}
+	}
+	
+	@Benchmark
+	public void putOwnDevice(Slot slot) {
+		store.put(devices[slot.device], operation, VALUE);
+	}
+	
+	@Benchmark
+	public void putSharedDevice() {
+		store.put(devices[0], operation, VALUE);
+	}
+	
+	@Benchmark
+	public String getOwnDevice(Slot slot) {
+		return store.get(devices[slot.device].getId(), OBJECT);
+	}
+	
+	@Benchmark
+	public String getSharedDevice() {
+		return store.get(devices[0].getId(), OBJECT);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ObjectStoreBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.data.ObjectStore;
+import org.edgexfoundry.domain.meta.PropertyValue;
+import org.edgexfoundry.fischertech.ObjectTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Transforming a device value through the compiled plan against the BigInteger implementation.
+// Run with main() from the test classpath.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformPlanBenchmark {
+
+	private static final String[] INPUTS = { "0x3412", "0xFF7F", "0x0800", "512", "-8" };
+	
+	private ObjectTransform transform;
+	private PropertyValue value;
+	private TransformPlan plan;
+	private int next;
+	
+	@Setup
+	public void setup() {
+		ObjectStore store = new ObjectStore();
+		store.setTransformData(true);
+		transform = new ObjectTransform();
+		ReflectionTestUtils.setField(transform, "objectCache", store);
+		value = TransformPlanTest.value("Integer", 4, 2, "true", "0x0FF0", 4, true);
+		value.setScale("0.5");
+		plan = new TransformPlan(value);
+	}
+	
+	private String input() {
+		next = (next + 1) % INPUTS.length;
+		return INPUTS[next];
+	}
+	
+	@Benchmark
+	public String compiled() {
+		return transform.transform(plan, input());
+	}
+	
+	@Benchmark
+	public String bigInteger() {
+		return transform.transform(value, input());
+	}
+	
+	@Benchmark
+	public String formatCompiled() {
+		return transform.format(plan, input());
+	}
+	
+	@Benchmark
+	public String formatBigInteger() {
+		return transform.format(value, input());
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TransformPlanBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.edgexfoundry.data.ObjectStore;
+import org.edgexfoundry.domain.meta.PropertyValue;
+import org.edgexfoundry.fischertech.ObjectTransform;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// The compiled plan must give the same results, and throw the same exceptions, as the BigInteger
+// implementation in ObjectTransform it replaces
+public class TransformPlanTest {
+
+	private ObjectStore store;
+	private ObjectTransform transform;
+	
+	@Before
+	public void setup() {
+		store = new ObjectStore();
+		store.setTransformData(true);
+		transform = new ObjectTransform();
+		ReflectionTestUtils.setField(transform, "objectCache", store);
+	}
+	
+	static PropertyValue value(String type, int size, int word, String lsb, String mask, int shift, boolean signed) {
+		PropertyValue value = new PropertyValue();
+		value.setType(type);
+		value.setSize(String.valueOf(size));
+		value.setWord(String.valueOf(word));
+		value.setLSB(lsb);
+		value.setMask(mask);
+		value.setShift(String.valueOf(shift));
+		value.setSigned(signed);
+		value.setScale("1");
+		value.setOffset("0");
+		value.setBase("0");
+		return value;
+	}
+	
+	private static String result(Callable<String> call) {
+		try {
+			return call.call();
+		} catch (Exception e) {
+			return e.getClass().getName();
+		}
+	}
+	
+	private void assertSame(PropertyValue value, String input, String current) {
+		TransformPlan plan = new TransformPlan(value);
+		String context = " for " + input + " size " + value.getSize() + " word " + value.getWord() + " lsb " + value.getLSB()
+				+ " mask " + value.getMask() + " shift " + value.getShift() + " signed " + value.getSigned();
+		assertEquals("transform" + context, result(() -> transform.transform(value, input)), result(() -> transform.transform(plan, input)));
+		assertEquals("format" + context, result(() -> transform.format(value, input)), result(() -> transform.format(plan, input)));
+		assertEquals("maskedValue" + context, result(() -> transform.maskedValue(value, input, current)),
+				result(() -> transform.maskedValue(plan, input, current)));
+	}
+	
+	@Test
+	public void testProfileValuesUseThePlan() {
+		PropertyValue value = value("Integer", 4, 2, "true", "0x00", 0, false);
+		TransformPlan plan = new TransformPlan(value);
+		assertNotNull(plan.transform("0x3412", true));
+		assertEquals(transform.transform(value, "0x3412"), transform.transform(plan, "0x3412"));
+		assertEquals(transform.transform(value, "-8"), transform.transform(plan, "-8"));
+		assertEquals(transform.format(value, "512"), transform.format(plan, "512"));
+	}
+	
+	@Test
+	public void testSignedMaskedAndScaledValues() {
+		PropertyValue value = value("Float", 4, 2, "false", "0x0FF0", 4, true);
+		value.setScale("0.5");
+		value.setOffset("3");
+		for (String input: new String[] { "0x0000", "0x0FF0", "0x0800", "0xFFFF", "0x1234", "100", "-1" })
+			assertSame(value, input, "0xABCD");
+		value.setBase("2");
+		assertSame(value, "0x0120", "0x0000");
+	}
+	
+	@Test
+	public void testRawTransformData() {
+		store.setTransformData(false);
+		PropertyValue value = value("Integer", 4, 1, "true", "0x00", 0, true);
+		for (String input: new String[] { "0x8001", "0x7FFF", "0xFFFF", "12" })
+			assertSame(value, input, "0x0000");
+	}
+	
+	@Test
+	public void testWideValuesFallBackToBigInteger() {
+		// 16 hex digits do not fit the plan's long arithmetic
+		PropertyValue value = value("Integer", 16, 4, "false", "0x00", 0, true);
+		TransformPlan plan = new TransformPlan(value);
+		assertNull(plan.transform("0xFFFFFFFFFFFFFFFF", true));
+		assertSame(value, "0xFFFFFFFFFFFFFFFF", "0x0000000000000000");
+		assertSame(value, "0x8000000000000001", "0x0000000000000000");
+	}
+	
+	@Test
+	public void testLongInputFallsBackToBigInteger() {
+		PropertyValue value = value("Integer", 4, 2, "true", "0x00", 0, false);
+		TransformPlan plan = new TransformPlan(value);
+		assertNull(plan.transform("0x1122334455667788", true));
+		assertSame(value, "0x1122334455667788", "0x0000");
+	}
+	
+	@Test
+	public void testWideMaskFallsBackToBigInteger() {
+		PropertyValue value = value("Integer", 4, 2, "false", "0xFFFFFFFFFFFFFFFFFF", 0, false);
+		assertNull(new TransformPlan(value).transform("0x1234", true));
+		assertSame(value, "0x1234", "0xFFFF");
+	}
+	
+	@Test
+	public void testInvalidInputThrowsTheSameException() {
+		PropertyValue value = value("Integer", 4, 2, "true", "0x00", 0, false);
+		assertSame(value, "0x12G4", "0x0000");
+		assertSame(value, "abc", "0x0000");
+		assertSame(value(null, 4, 2, "true", "0x00", 0, false), "0x1234", "0x0000");
+	}
+	
+	@Test
+	public void testRandomValuesMatchBigInteger() {
+		Random random = new Random(42);
+		for (int n = 0; n < 20000; n++) {
+			int size = 1 + random.nextInt(17);
+			long mask = random.nextBoolean() ? 0 : random.nextLong() >>> (4 + random.nextInt(60));
+			PropertyValue value = value(random.nextBoolean() ? "Float" : "Integer", size, random.nextInt(5),
+					random.nextInt(5) == 0 ? null : String.valueOf(random.nextBoolean()), "0x" + Long.toHexString(mask),
+					random.nextInt(10), random.nextBoolean());
+			value.setScale(random.nextBoolean() ? "1" : "0.5");
+			value.setOffset(random.nextBoolean() ? "0" : "3");
+			value.setBase(random.nextInt(4) == 0 ? "2" : "0");
+			store.setTransformData(random.nextBoolean());
+			
+			StringBuilder hex = new StringBuilder("0x");
+			int digits = random.nextInt(4) == 0 ? random.nextInt(18) : size;
+			for (int i = 0; i < digits; i++)
+				hex.append(Integer.toHexString(random.nextInt(16)));
+			String input = random.nextInt(3) == 0 ? String.valueOf(random.nextInt(2000) - 500) : hex.toString();
+			assertSame(value, input, hex.toString());
+		}
+	}
+	
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.edgexfoundry.fishX1.TA_INPUT;
+import org.junit.Test;
+
+public class TransportAreaTest {
+
+	private static void decode(TransportArea area, int value) {
+		TA_INPUT next = area.getNextInput();
+		for (int i = 0; i < next.uni.length; i++)
+			next.uni[i] = value;
+		area.publishInput();
+	}
+	
+	@Test
+	public void testHeldSnapshotSurvivesLaterPublishes() {
+		TransportArea area = new TransportArea();
+		decode(area, 1);
+		TA_INPUT held = area.getInput();
+		decode(area, 2);
+		decode(area, 3);
+		for (int i = 0; i < held.uni.length; i++)
+			assertEquals(1, held.uni[i]);
+		assertEquals(3, area.getInput().uni[0]);
+	}
+	
+	@Test
+	public void testNextInputIsNeverThePublishedSnapshot() {
+		TransportArea area = new TransportArea();
+		TA_INPUT next = area.getNextInput();
+		assertSame(next, area.publishInput());
+		assertSame(next, area.getInput());
+		assertNotSame(next, area.getNextInput());
+	}
+	
+}
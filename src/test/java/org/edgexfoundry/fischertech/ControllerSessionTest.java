@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.edgexfoundry.exception.controller.NotFoundException;
+import org.edgexfoundry.exception.controller.ServiceException;
+import org.edgexfoundry.fishX1.SimulatedTransport;
+import org.edgexfoundry.handler.OperationExecutor;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Sessions against the simulated controller with lost and corrupted replies
+public class ControllerSessionTest {
+
+	// motors 3 and 4 are not held back by the safety interlocks
+	private static final int LIGHTS = 3;
+	private static final int SPARE = 4;
+	
+	private ControllerSession session;
+	
+	private static FischertechDriver driver(int pipelineDepth) {
+		FischertechDriver driver = new FischertechDriver();
+		ReflectionTestUtils.setField(driver, "executor", new OperationExecutor());
+		ReflectionTestUtils.setField(driver, "pipelineDepth", pipelineDepth);
+		ReflectionTestUtils.setField(driver, "replyTimeout", 50L);
+		ReflectionTestUtils.setField(driver, "cyclePeriod", 1L);
+		ReflectionTestUtils.setField(driver, "idlePeriod", 0L);
+		ReflectionTestUtils.setField(driver, "idleAfter", 5000L);
+		ReflectionTestUtils.setField(driver, "inputDebounce", "0");
+		ReflectionTestUtils.setField(driver, "inputEdge", "both");
+		ReflectionTestUtils.setField(driver, "inputInterval", "0");
+		ReflectionTestUtils.setField(driver, "commandQueueSize", 64);
+		ReflectionTestUtils.setField(driver, "commandTimeout", 2000L);
+		return driver;
+	}
+	
+	@After
+	public void teardown() {
+		if (session != null)
+			session.close();
+	}
+	
+	@Test
+	public void testPipelinedSessionRidesOutLostReplies() {
+		SimulatedTransport transport = new SimulatedTransport("sim-pipelined", 1, 0.1, 0.1);
+		session = new ControllerSession("sim-pipelined", transport, driver(4));
+		assertTrue(session.open());
+		
+		int last = 0;
+		for (int i = 1; i <= 200; i++) {
+			int duty = (i % 2 == 0) ? 512 : -256;
+			OutputCommand command = new OutputCommand(i % 3 == 0 ? SPARE : LIGHTS, duty);
+			int frame = session.submit(command);
+			assertEquals(frame, command.getFrame());
+			assertEquals(duty, command.getAppliedValue());
+			if (command.getTarget() == LIGHTS)
+				last = duty;
+		}
+		
+		assertTrue(transport.getDropped() > 0);
+		assertTrue(transport.getCorrupted() > 0);
+		assertTrue(session.isConnected());
+		// the frames reached the controller and its replies still get through
+		assertEquals(last, transport.getModel().getDuty(LIGHTS));
+		assertEquals(last, session.getTransportArea().getPower(LIGHTS));
+		assertTrue(session.getTransportArea().getInputTime() > 0);
+		
+		session.close();
+		assertFalse(session.isConnected());
+		try {
+			session.submit(new OutputCommand(LIGHTS, 0));
+			fail("submit on a closed session");
+		} catch (NotFoundException e) {
+		}
+	}
+	
+	@Test
+	public void testLockStepSessionClosesOnLostReply() {
+		SimulatedTransport transport = new SimulatedTransport("sim-lockstep", 1, 0.2, 0.2);
+		session = new ControllerSession("sim-lockstep", transport, driver(1));
+		assertTrue(session.open());
+		
+		int applied = 0;
+		try {
+			for (int i = 1; i <= 200; i++) {
+				session.submit(new OutputCommand(LIGHTS, i));
+				applied++;
+			}
+			fail("no reply was lost");
+		} catch (NotFoundException | ServiceException e) {
+		}
+		
+		assertTrue(transport.getDropped() + transport.getCorrupted() > 0);
+		assertTrue(applied < 200);
+		assertFalse(session.isConnected());
+		assertFalse(transport.isOpen());
+	}
+	
+}
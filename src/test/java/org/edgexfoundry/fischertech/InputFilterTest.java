@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fischertech;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.fishX1.TA_INPUT;
+import org.junit.Test;
+
+public class InputFilterTest {
+
+	private static final int I1 = 1;
+	
+	private static InputFilter filter(long debounce, int edges, long interval) {
+		long[] debounces = new long[TA_INPUT.MASK_BITS];
+		int[] edgeSelection = new int[TA_INPUT.MASK_BITS];
+		long[] intervals = new long[TA_INPUT.MASK_BITS];
+		Arrays.fill(debounces, debounce);
+		Arrays.fill(edgeSelection, edges);
+		Arrays.fill(intervals, interval);
+		return new InputFilter(debounces, edgeSelection, intervals);
+	}
+	
+	private static long ms(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+	
+	@Test
+	public void testReportsEveryChangeWithoutFiltering() {
+		InputFilter inputs = filter(0, InputFilter.BOTH, 0);
+		assertEquals(I1, inputs.update(I1, ms(1)));
+		assertEquals(I1, inputs.getState());
+		assertEquals(I1, inputs.update(0, ms(2)));
+		assertEquals(0, inputs.getState());
+		assertEquals(0, inputs.update(0, ms(3)));
+	}
+	
+	@Test
+	public void testDebounceIgnoresShortPulses() {
+		InputFilter inputs = filter(10, InputFilter.BOTH, 0);
+		assertEquals(0, inputs.update(I1, ms(0)));
+		assertTrue(inputs.isSettling());
+		assertEquals(0, inputs.update(0, ms(5)));
+		assertEquals(0, inputs.update(0, ms(20)));
+		assertEquals(0, inputs.getState());
+		assertFalse(inputs.isSettling());
+		assertEquals(1, inputs.getSuppressed());
+	}
+	
+	@Test
+	public void testDebounceReportsHeldChange() {
+		InputFilter inputs = filter(10, InputFilter.BOTH, 0);
+		assertEquals(0, inputs.update(I1, ms(0)));
+		assertEquals(0, inputs.update(I1, ms(9)));
+		assertEquals(I1, inputs.update(I1, ms(10)));
+		assertEquals(I1, inputs.getState());
+		assertEquals(0, inputs.update(I1, ms(11)));
+		assertEquals(0, inputs.getSuppressed());
+	}
+	
+	@Test
+	public void testEdgeSelectionDropsUnwantedEdges() {
+		InputFilter inputs = filter(0, InputFilter.RISING, 0);
+		assertEquals(I1, inputs.update(I1, ms(1)));
+		assertEquals(0, inputs.update(0, ms(2)));
+		assertEquals(0, inputs.getState());
+		assertFalse(inputs.isSettling());
+		assertEquals(1, inputs.getSuppressed());
+		assertEquals(I1, inputs.update(I1, ms(3)));
+	}
+	
+	@Test
+	public void testIntervalReportsFinalStateWhenItExpires() {
+		InputFilter inputs = filter(0, InputFilter.BOTH, 100);
+		assertEquals(I1, inputs.update(I1, ms(0)));
+		// released inside the interval
+		assertEquals(0, inputs.update(0, ms(10)));
+		assertTrue(inputs.isSettling());
+		assertEquals(0, inputs.update(0, ms(99)));
+		assertEquals(I1, inputs.update(0, ms(100)));
+		assertEquals(0, inputs.getState());
+		assertFalse(inputs.isSettling());
+		// held back, not discarded
+		assertEquals(0, inputs.getSuppressed());
+	}
+	
+	@Test
+	public void testIntervalDropsChangesThatRevert() {
+		InputFilter inputs = filter(0, InputFilter.BOTH, 100);
+		assertEquals(I1, inputs.update(I1, ms(0)));
+		assertEquals(0, inputs.update(0, ms(10)));
+		assertEquals(0, inputs.update(I1, ms(20)));
+		assertEquals(0, inputs.update(I1, ms(150)));
+		assertEquals(I1, inputs.getState());
+		assertFalse(inputs.isSettling());
+		assertEquals(2, inputs.getSuppressed());
+	}
+	
+	@Test
+	public void testTrailingReportRespectsEdgeSelection() {
+		InputFilter inputs = filter(0, InputFilter.RISING, 100);
+		assertEquals(I1, inputs.update(I1, ms(0)));
+		assertEquals(0, inputs.update(0, ms(10)));
+		assertEquals(0, inputs.update(0, ms(150)));
+		assertFalse(inputs.isSettling());
+		// the next press is a new rising edge
+		assertEquals(I1, inputs.update(I1, ms(200)));
+	}
+	
+	@Test
+	public void testInputsAreFilteredIndependently() {
+		int i2 = 1 << 1;
+		InputFilter inputs = filter(0, InputFilter.BOTH, 100);
+		assertEquals(I1, inputs.update(I1, ms(0)));
+		assertEquals(i2, inputs.update(I1 | i2, ms(10)));
+		assertEquals(0, inputs.update(i2, ms(20)));
+		assertEquals(I1, inputs.update(i2, ms(100)));
+		assertEquals(i2, inputs.getState());
+	}
+	
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+// The hex string encoder FishX1Packet used before frames were written into a byte buffer, kept as
+// the reference the byte encoder is compared and benchmarked against
+public class BaselineFrames {
+
+	public static String output(int tid, int sid, TA_OUTPUT output) {
+		String structure = "";
+		for (int i = 0; i < output.cnt_reset.length; i++)
+			structure += String.format("%04X", output.cnt_reset[i]);
+		for (int i = 0; i < output.master.length; i++)
+			structure += String.format("%02X", output.master[i]);
+		for (int i = 0; i < output.duty.length; i++)
+			structure += String.format("%04X", output.duty[i]);
+		for (int i = 0; i < output.distance.length; i++)
+			structure += String.format("%04X", output.distance[i]);
+		for (int i = 0; i < output.motor_ex_cmd_id.length; i++)
+			structure += String.format("%04X", output.motor_ex_cmd_id[i]);
+		return frame(2, tid, sid, 1, structure);
+	}
+	
+	public static String frame(int command, int tid, int sid, int numStructures, String structure) {
+		String TAID = (numStructures > 0) ? littleEndian(0, 4) : "";
+		String length = String.format("%04X", 20 + TAID.length() / 2 + structure.length() / 2);
+		String payload = length + littleEndian(2, 4) + littleEndian(1, 4) + littleEndian(tid, 2) + littleEndian(sid, 2)
+				+ littleEndian(command, 4) + littleEndian(numStructures, 4) + TAID + structure;
+		int crc = 0;
+		for (int i = 0; i < payload.length() / 2; i++)
+			crc += Integer.parseInt(payload.substring(i * 2, i * 2 + 2), 16);
+		crc = 65535 - crc + 1;
+		return "0255" + payload + String.format("%04X", crc) + "03";
+	}
+	
+	public static byte[] hexToBytes(String s) {
+		byte[] byteArray = new byte[s.length() / 2];
+		for (int i = 0; i < byteArray.length; i += 1)
+			byteArray[i] = (byte) (Integer.parseInt(s.substring(i * 2, (i + 1) * 2), 16));
+		return byteArray;
+	}
+	
+	private static String littleEndian(int value, int length) {
+		String out = "";
+		for (int i = 0; i < length; i++) {
+			out += String.format("%02X", value % 256);
+			value = value >> 8;
+		}
+		return out;
+	}
+	
+}
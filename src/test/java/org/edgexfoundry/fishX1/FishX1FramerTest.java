@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FishX1FramerTest {
+
+	// header, length, data, checksum and footer; the framer does not check the checksum
+	private static byte[] frame(int... data) {
+		byte[] frame = new byte[data.length + 7];
+		frame[0] = 0x02;
+		frame[1] = 0x55;
+		frame[2] = (byte) (data.length >> 8);
+		frame[3] = (byte) data.length;
+		for (int i = 0; i < data.length; i++)
+			frame[4 + i] = (byte) data[i];
+		frame[frame.length - 1] = 0x03;
+		return frame;
+	}
+	
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (byte[] part: parts)
+			stream.write(part, 0, part.length);
+		return stream.toByteArray();
+	}
+	
+	private static List<byte[]> accept(FishX1Framer framer, byte[] stream) {
+		List<byte[]> frames = new ArrayList<byte[]>();
+		for (byte b: stream)
+			if (framer.accept(b))
+				frames.add(Arrays.copyOf(framer.getReply().getBuffer(), framer.getReply().getLength()));
+		while (framer.next())
+			frames.add(Arrays.copyOf(framer.getReply().getBuffer(), framer.getReply().getLength()));
+		return frames;
+	}
+	
+	@Test
+	public void testFramesAcrossNoise() {
+		byte[] first = frame(1, 2, 3);
+		byte[] second = frame(0x02, 0x55, 0x03);
+		FishX1Framer framer = new FishX1Framer();
+		List<byte[]> frames = accept(framer, concat(new byte[] { 0x00, 0x03, 0x02 }, first, new byte[] { 0x55 }, second));
+		assertEquals(2, frames.size());
+		assertArrayEquals(first, frames.get(0));
+		assertArrayEquals(second, frames.get(1));
+	}
+	
+	@Test
+	public void testFrameInsideBadFooterIsFound() {
+		// a stray header claims a length that runs past the real frame behind it
+		byte[] real = frame(9, 8, 7, 6);
+		byte[] next = frame(5);
+		byte[] stray = { 0x02, 0x55, 0x00, 0x0A };
+		FishX1Framer framer = new FishX1Framer();
+		List<byte[]> frames = accept(framer, concat(stray, real, next, frame(4)));
+		assertEquals(3, frames.size());
+		assertArrayEquals(real, frames.get(0));
+		assertArrayEquals(next, frames.get(1));
+		assertEquals(1, framer.getDropped());
+	}
+	
+	@Test
+	public void testFrameAfterOversizedLengthIsFound() {
+		byte[] real = frame(1, 2);
+		FishX1Framer framer = new FishX1Framer();
+		List<byte[]> frames = accept(framer, concat(new byte[] { 0x02, 0x55, 0x7F }, real));
+		assertEquals(1, frames.size());
+		assertArrayEquals(real, frames.get(0));
+		assertEquals(1, framer.getDropped());
+	}
+	
+	@Test
+	public void testCorruptedFrameThenGoodFrame() {
+		byte[] corrupt = frame(1, 2, 3);
+		corrupt[corrupt.length - 1] = 0;
+		byte[] good = frame(4, 5, 6);
+		FishX1Framer framer = new FishX1Framer();
+		List<byte[]> frames = accept(framer, concat(corrupt, good));
+		assertEquals(1, frames.size());
+		assertArrayEquals(good, frames.get(0));
+	}
+	
+	@Test
+	public void testStrayHeadersBetweenFrames() {
+		Random random = new Random(7);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		List<byte[]> sent = new ArrayList<byte[]>();
+		for (int i = 0; i < 1000; i++) {
+			// a stray header whose claimed length ends inside the next frame, before its footer
+			byte[] noise = new byte[4 + random.nextInt(4)];
+			noise[0] = 0x02;
+			noise[1] = 0x55;
+			noise[3] = (byte) random.nextInt(noise.length + 2);
+			for (int j = 4; j < noise.length; j++)
+				noise[j] = (byte) (0x04 + random.nextInt(0x50));
+			byte[] good = frame(0x10 + (i & 0x3F), 0x20 + (i >> 6));
+			stream.write(noise, 0, noise.length);
+			stream.write(good, 0, good.length);
+			sent.add(good);
+		}
+		List<byte[]> frames = accept(new FishX1Framer(), stream.toByteArray());
+		assertEquals(sent.size(), frames.size());
+		for (int i = 0; i < sent.size(); i++)
+			assertArrayEquals(sent.get(i), frames.get(i));
+	}
+	
+}
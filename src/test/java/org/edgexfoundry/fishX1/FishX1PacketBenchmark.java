@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Encoding one TA_OUTPUT frame per I/O cycle, the byte buffer encoder against the hex string one.
+// Run with main() from the test classpath.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishX1PacketBenchmark {
+
+	private FishX1Packet packet;
+	private int tid;
+	
+	@Setup
+	public void setup() {
+		packet = new FishX1Packet(2);
+		packet.getOutput().setDuty(1, 512);
+		packet.getOutput().setDuty(2, -512);
+		packet.getOutput().setDuty(3, 8);
+	}
+	
+	@Benchmark
+	public byte[] encode() {
+		tid = (tid + 1) & 0xFFFF;
+		packet.update(tid, 0);
+		return packet.getFrame();
+	}
+	
+	@Benchmark
+	public byte[] baseline() {
+		tid = (tid + 1) & 0xFFFF;
+		return BaselineFrames.hexToBytes(BaselineFrames.output(tid, 0, packet.getOutput()));
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FishX1PacketBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.fishX1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FishX1PacketTest {
+
+	// frames captured from the hex string encoder
+	private static final String OUTPUT_DEFAULT = "025500440200000001000000010000000200000001000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000FFB503";
+	private static final String OUTPUT_MOTORS = "0255004402000000010000003412EFBE020000000100000000000000000000000000000000000000020000000000012C000800000000000000000000000000000000000000000000FD8C03";
+	private static final String CONFIG = "02550048020000000100000001000000050000000100000000000000010101018181818181818181010101010000000000000000000000000000000000000000000000000000000000000000FB9E03";
+	private static final String EMPTY_STRUCTURE = "02550018020000000100000005000600070000000100000000000000FFD203";
+	
+	private static byte[] frame(FishX1Packet packet) {
+		return Arrays.copyOf(packet.getFrame(), packet.getFrameLength());
+	}
+	
+	@Test
+	public void testDefaultOutputFrame() {
+		FishX1Packet packet = new FishX1Packet(2);
+		assertEquals(OUTPUT_DEFAULT, packet.toString());
+		assertArrayEquals(BaselineFrames.hexToBytes(OUTPUT_DEFAULT), frame(packet));
+	}
+	
+	@Test
+	public void testOutputFrameWithMotors() {
+		FishX1Packet packet = new FishX1Packet(2, 0x1234, 0xBEEF);
+		packet.getOutput().setDuty(1, 512);
+		packet.getOutput().setDuty(2, -300);
+		packet.getOutput().setDuty(3, 8);
+		packet.getOutput().setDuty(4, 0);
+		assertEquals(OUTPUT_MOTORS, packet.toString());
+	}
+	
+	@Test
+	public void testConfigFrame() {
+		assertEquals(CONFIG, new FishX1Packet(5).toString());
+	}
+	
+	@Test
+	public void testEmptyStructureFrame() {
+		assertEquals(EMPTY_STRUCTURE, new FishX1Packet(7, 5, 6).toString());
+	}
+	
+	@Test
+	public void testReusedPacketMatchesBaseline() {
+		Random random = new Random(42);
+		FishX1Packet packet = new FishX1Packet(2);
+		TA_OUTPUT output = packet.getOutput();
+		for (int n = 0; n < 10000; n++) {
+			int tid = random.nextInt(0x10000);
+			int sid = random.nextInt(0x10000);
+			for (int i = 0; i < output.cnt_reset.length; i++)
+				output.cnt_reset[i] = random.nextInt(2);
+			for (int i = 0; i < output.master.length; i++)
+				output.master[i] = random.nextInt(0x100);
+			for (int motor = 1; motor <= 4; motor++)
+				output.setDuty(motor, random.nextInt(1025) - 512);
+			for (int i = 0; i < output.distance.length; i++)
+				output.distance[i] = random.nextInt(0x10000);
+			for (int i = 0; i < output.motor_ex_cmd_id.length; i++)
+				output.motor_ex_cmd_id[i] = random.nextInt(0x10000);
+			packet.update(tid, sid);
+			String expected = BaselineFrames.output(tid, sid, output);
+			assertArrayEquals("frame " + n + " " + expected, BaselineFrames.hexToBytes(expected), frame(packet));
+		}
+	}
+	
+}
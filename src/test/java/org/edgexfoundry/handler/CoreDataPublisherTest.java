@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.edgexfoundry.controller.EventClient;
+import org.edgexfoundry.data.DeviceStore;
+import org.edgexfoundry.data.EventSpool;
+import org.edgexfoundry.domain.core.Event;
+import org.edgexfoundry.domain.core.Reading;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CoreDataPublisherTest {
+
+	// in memory spool whose appends take as long as a slow disk
+	private static class SlowSpool extends EventSpool {
+		private final ArrayDeque<Event> events = new ArrayDeque<Event>();
+		volatile long delay = 0;
+		
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+		
+		@Override
+		public synchronized boolean append(String deviceName, List<Reading> readings) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			Event event = new Event(deviceName);
+			event.setReadings(new ArrayList<Reading>(readings));
+			events.add(event);
+			return true;
+		}
+		
+		@Override
+		public synchronized Event peek() {
+			return events.peek();
+		}
+		
+		@Override
+		public synchronized void commit() {
+			events.poll();
+		}
+		
+		@Override
+		public synchronized boolean isEmpty() {
+			return events.isEmpty();
+		}
+		
+		@Override
+		public synchronized Map<String, Object> getStatistics() {
+			Map<String, Object> stats = new HashMap<String, Object>();
+			stats.put("bytes", events.size());
+			return stats;
+		}
+	}
+	
+	// a device metadata cannot be reached for
+	private static class UnreachableDevices extends DeviceStore {
+		@Override
+		public Device getDevice(String deviceName) {
+			Device device = new Device();
+			device.setName(deviceName);
+			device.setOperatingState(OperatingState.ENABLED);
+			return device;
+		}
+		
+		@Override
+		public void setDeviceOpState(String deviceName, OperatingState state) {
+			throw new IllegalStateException("metadata unreachable");
+		}
+	}
+	
+	private CoreDataPublisher publisher;
+	private SlowSpool spool;
+	private volatile boolean up = true;
+	private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+	private int next = 0;
+	
+	@Before
+	public void setup() {
+		EventClient client = (EventClient) Proxy.newProxyInstance(EventClient.class.getClassLoader(),
+				new Class<?>[] { EventClient.class }, (proxy, method, args) -> {
+					if (method.getName().equals("add")) {
+						if (!up)
+							throw new IllegalStateException("core data down");
+						for (Reading reading: ((Event) args[0]).getReadings())
+							received.add(reading.getValue());
+						return "id";
+					}
+					if (method.getName().equals("toString"))
+						return "EventClient";
+					if (method.getName().equals("hashCode"))
+						return System.identityHashCode(proxy);
+					if (method.getName().equals("equals"))
+						return proxy == args[0];
+					throw new UnsupportedOperationException(method.getName());
+				});
+		spool = new SlowSpool();
+		publisher = new CoreDataPublisher();
+		ReflectionTestUtils.setField(publisher, "retries", 1);
+		ReflectionTestUtils.setField(publisher, "delay", 10L);
+		ReflectionTestUtils.setField(publisher, "capacity", 8);
+		ReflectionTestUtils.setField(publisher, "workers", 1);
+		ReflectionTestUtils.setField(publisher, "linger", 1L);
+		ReflectionTestUtils.setField(publisher, "batchSize", 4);
+		ReflectionTestUtils.setField(publisher, "overflowPolicy", "drop-oldest");
+		ReflectionTestUtils.setField(publisher, "spillCapacity", 8192);
+		ReflectionTestUtils.setField(publisher, "maxBackoff", 100L);
+		ReflectionTestUtils.setField(publisher, "replayInterval", 20L);
+		ReflectionTestUtils.setField(publisher, "eventClient", client);
+		ReflectionTestUtils.setField(publisher, "spool", spool);
+		ReflectionTestUtils.setField(publisher, "devices", new UnreachableDevices());
+	}
+	
+	@After
+	public void teardown() {
+		publisher.stop();
+	}
+	
+	private void publish(int count) {
+		for (int i = 0; i < count; i++) {
+			Reading reading = new Reading();
+			reading.setName("I1");
+			reading.setValue(String.valueOf(next++));
+			publisher.publish("TXT", Collections.singletonList(reading));
+		}
+	}
+	
+	private void assertReceivedInOrder() throws InterruptedException {
+		for (int i = 0; i < 500 && received.size() < next; i++)
+			Thread.sleep(10);
+		assertEquals(next, received.size());
+		for (int i = 0; i < next; i++)
+			assertEquals(String.valueOf(i), received.get(i));
+		assertEquals(0, ReflectionTestUtils.getField(publisher, "live"));
+	}
+	
+	@Test
+	public void testPublishDoesNotWaitForTheSpool() throws InterruptedException {
+		publisher.start();
+		up = false;
+		spool.delay = 300;
+		publish(1);
+		// the worker is now writing the failed event to the slow spool
+		Thread.sleep(50);
+		long started = System.nanoTime();
+		publish(100);
+		long elapsed = (System.nanoTime() - started) / 1000000;
+		assertTrue("publish took " + elapsed + "ms", elapsed < 150);
+		spool.delay = 0;
+		up = true;
+		assertReceivedInOrder();
+	}
+	
+	@Test
+	public void testFailedSendWithUnreachableMetadataKeepsOrder() throws InterruptedException {
+		publisher.start();
+		up = false;
+		publish(10);
+		Thread.sleep(50);
+		up = true;
+		publish(10);
+		assertReceivedInOrder();
+	}
+	
+	@Test
+	public void testOverflowDuringOutageKeepsOrder() throws InterruptedException {
+		publisher.start();
+		for (int round = 0; round < 3; round++) {
+			up = round != 1;
+			publish(200);
+			Thread.sleep(100);
+		}
+		up = true;
+		assertReceivedInOrder();
+		assertEquals(0L, publisher.getStatistics().get("dropped"));
+	}
+	
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @microservice:  device-fischertechnik
+ * @author: Tyler Cox, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.edgexfoundry.data.ProfileStore;
+import org.edgexfoundry.domain.FischertechDevice;
+import org.edgexfoundry.domain.FischertechObject;
+import org.edgexfoundry.domain.ResponseObject;
+import org.edgexfoundry.domain.core.Reading;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceObject;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.domain.meta.ProfileProperty;
+import org.edgexfoundry.domain.meta.PropertyValue;
+import org.edgexfoundry.domain.meta.ResourceOperation;
+import org.edgexfoundry.fischertech.FischertechDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Identical gets in flight at the same time share one device read
+public class FischertechHandlerTest {
+
+	private static final String OBJECT = "Motor";
+	private static final String COMMAND = "Motor";
+	
+	// an operation the driver was asked to run, completed by the test
+	private static class Operation {
+		final String transactionId;
+		final String opId;
+		final String value;
+		
+		Operation(String transactionId, String opId, String value) {
+			this.transactionId = transactionId;
+			this.opId = opId;
+			this.value = value;
+		}
+	}
+	
+	private static class HeldDriver extends FischertechDriver {
+		final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
+		
+		@Override
+		public void process(ResourceOperation operation, FischertechDevice device, FischertechObject object, String value, String transactionId, String opId) {
+			operations.add(new Operation(transactionId, opId, value));
+		}
+	}
+	
+	private static class CountingProcessor extends CoreDataMessageHandler {
+		final AtomicInteger published = new AtomicInteger();
+		
+		@Override
+		public List<ResponseObject> sendCoreData(String deviceName, List<Reading> readings, Map<String, FischertechObject> objects) {
+			published.incrementAndGet();
+			List<ResponseObject> resps = new ArrayList<ResponseObject>();
+			for (Reading reading: readings)
+				resps.add(new ResponseObject(reading.getName(), reading.getValue()));
+			return resps;
+		}
+	}
+	
+	private FischertechHandler handler;
+	private HeldDriver driver;
+	private CountingProcessor processor;
+	private OperationExecutor executor;
+	private FischertechDevice device;
+	
+	@Before
+	public void setup() {
+		executor = new OperationExecutor();
+		ReflectionTestUtils.setField(executor, "mode", "pool");
+		ReflectionTestUtils.setField(executor, "threads", 4);
+		ReflectionTestUtils.setField(executor, "queueSize", 64);
+		ReflectionTestUtils.setField(executor, "submitWait", 100L);
+		executor.start();
+		
+		PropertyValue value = new PropertyValue();
+		value.setType("Integer");
+		value.setSize("4");
+		value.setMask("0x00");
+		ProfileProperty properties = new ProfileProperty();
+		properties.setValue(value);
+		DeviceObject object = new DeviceObject();
+		object.setName(OBJECT);
+		object.setProperties(properties);
+		
+		ResourceOperation get = new ResourceOperation("get", OBJECT);
+		get.setObject(OBJECT);
+		get.setProperty("value");
+		ResourceOperation set = new ResourceOperation("set", OBJECT);
+		set.setObject(OBJECT);
+		set.setProperty("value");
+		set.setParameter(OBJECT);
+		Map<String, List<ResourceOperation>> resource = new HashMap<String, List<ResourceOperation>>();
+		resource.put("get", Collections.singletonList(get));
+		resource.put("set", Collections.singletonList(set));
+		
+		Device meta = new Device();
+		meta.setId("device1");
+		meta.setName("TXT");
+		meta.setProfile(new DeviceProfile());
+		device = new FischertechDevice(meta);
+		
+		ProfileStore profiles = new ProfileStore();
+		profiles.getObjects().put(device.getName(), Collections.singletonMap(OBJECT, new FischertechObject(object)));
+		profiles.getCommands().put(device.getName(), Collections.singletonMap(COMMAND.toLowerCase(), resource));
+		
+		driver = new HeldDriver();
+		processor = new CountingProcessor();
+		handler = new FischertechHandler();
+		ReflectionTestUtils.setField(handler, "driver", driver);
+		ReflectionTestUtils.setField(handler, "profiles", profiles);
+		ReflectionTestUtils.setField(handler, "processor", processor);
+		ReflectionTestUtils.setField(handler, "executor", executor);
+		ReflectionTestUtils.setField(handler, "transactionTimeout", 5000L);
+		ReflectionTestUtils.setField(handler, "cacheMaxAge", 0L);
+	}
+	
+	@After
+	public void teardown() {
+		executor.stop();
+	}
+	
+	private Operation nextOperation() throws InterruptedException {
+		Operation operation = driver.operations.poll(2, TimeUnit.SECONDS);
+		assertNotNull("the device was not read", operation);
+		return operation;
+	}
+	
+	private void complete(Operation operation, String value) {
+		Reading reading = new Reading();
+		reading.setName(OBJECT);
+		reading.setValue(value);
+		handler.completeTransaction(operation.transactionId, operation.opId, Collections.singletonList(reading));
+	}
+	
+	private CompletableFuture<Map<String, String>> get() {
+		return handler.executeCommandAsync(device, COMMAND, null, 0L);
+	}
+	
+	private Object stat(String name) {
+		return handler.getReadStatistics().get(name);
+	}
+	
+	@Test
+	public void testConcurrentGetsShareOneRead() throws Exception {
+		int callers = 8;
+		List<CompletableFuture<Map<String, String>>> futures = Collections.synchronizedList(new ArrayList<CompletableFuture<Map<String, String>>>());
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(callers);
+		for (int i = 0; i < callers; i++) {
+			new Thread(() -> {
+				try {
+					start.await();
+					futures.add(get());
+				} catch (InterruptedException e) {
+				} finally {
+					started.countDown();
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+		assertEquals(callers, futures.size());
+		
+		complete(nextOperation(), "42");
+		Map<String, String> first = futures.get(0).get(2, TimeUnit.SECONDS);
+		assertEquals("42", first.get(OBJECT));
+		for (CompletableFuture<Map<String, String>> future: futures)
+			assertSame(first, future.get(2, TimeUnit.SECONDS));
+		
+		assertNull(driver.operations.poll(50, TimeUnit.MILLISECONDS));
+		assertEquals(1, processor.published.get());
+		assertEquals(1L, stat("deviceReads"));
+		assertEquals((long) callers - 1, stat("coalescedReads"));
+		assertEquals(0, stat("inFlight"));
+	}
+	
+	@Test
+	public void testReadIsReleasedAfterSuccessAndFailure() throws Exception {
+		CompletableFuture<Map<String, String>> read = get();
+		assertEquals(1, stat("inFlight"));
+		complete(nextOperation(), "1");
+		assertEquals("1", read.get(2, TimeUnit.SECONDS).get(OBJECT));
+		assertEquals(0, stat("inFlight"));
+		
+		// a later get reads the device again
+		read = get();
+		Operation operation = nextOperation();
+		handler.failTransaction(operation.transactionId, new IllegalStateException("controller gone"));
+		try {
+			read.get(2, TimeUnit.SECONDS);
+			fail("the failed read completed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, stat("inFlight"));
+		
+		read = get();
+		complete(nextOperation(), "2");
+		assertEquals("2", read.get(2, TimeUnit.SECONDS).get(OBJECT));
+		
+		assertEquals(3L, stat("deviceReads"));
+		assertEquals(0L, stat("coalescedReads"));
+		assertEquals(2, processor.published.get());
+	}
+	
+	@Test
+	public void testSetsAreNeverCoalesced() throws Exception {
+		String arguments = "{\"" + OBJECT + "\":\"5\"}";
+		CompletableFuture<Map<String, String>> first = handler.executeCommandAsync(device, COMMAND, arguments, 0L);
+		CompletableFuture<Map<String, String>> second = handler.executeCommandAsync(device, COMMAND, arguments, 0L);
+		assertTrue(first != second);
+		
+		Operation one = nextOperation();
+		Operation two = nextOperation();
+		assertTrue(!one.transactionId.equals(two.transactionId));
+		assertEquals("0005", one.value);
+		complete(one, "5");
+		complete(two, "5");
+		first.get(2, TimeUnit.SECONDS);
+		second.get(2, TimeUnit.SECONDS);
+		
+		assertEquals(2, processor.published.get());
+		assertEquals(0L, stat("deviceReads"));
+		assertEquals(0L, stat("coalescedReads"));
+		assertEquals(0, stat("inFlight"));
+	}
+	
+}